@@ -12,15 +12,16 @@ import android.widget.Toast;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.mymediaplayer.data.AppDatabase;
 import com.example.mymediaplayer.data.PasswordUtil;
 import com.example.mymediaplayer.data.SessionManager;
-import com.example.mymediaplayer.data.UserDao;
-import com.example.mymediaplayer.data.UserEntity;
+import com.example.mymediaplayer.data.UserRepository;
+import com.example.mymediaplayer.task.CancellationToken;
 
 public class LoginActivity extends AppCompatActivity {
     private SessionManager session;
-    private UserDao userDao;
+    private UserRepository users;
+    // Cancelled in onDestroy so a slow lookup doesn't land on a dead activity
+    private final CancellationToken lifetime = new CancellationToken();
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -31,7 +32,7 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
         setContentView(R.layout.activity_login);
-        userDao = AppDatabase.getInstance(this).userDao();
+        users = new UserRepository(this);
 
         EditText etUsername = findViewById(R.id.et_username);
         EditText etPassword = findViewById(R.id.et_password);
@@ -45,18 +46,21 @@ public class LoginActivity extends AppCompatActivity {
                 Toast.makeText(this, R.string.fill_all_fields, Toast.LENGTH_SHORT).show();
                 return;
             }
-            UserEntity user = userDao.findByUsername(u);
-            if (user == null) {
-                Toast.makeText(this, R.string.user_not_found, Toast.LENGTH_SHORT).show();
-                return;
-            }
-            String hash = PasswordUtil.hashPassword(p, user.salt);
-            if (!hash.equals(user.passwordHash)) {
-                Toast.makeText(this, R.string.invalid_credentials, Toast.LENGTH_SHORT).show();
-                return;
-            }
-            session.login(user.id, user.username);
-            goToMain();
+            btnLogin.setEnabled(false);
+            users.findByUsername(u, lifetime, user -> {
+                btnLogin.setEnabled(true);
+                if (user == null) {
+                    Toast.makeText(this, R.string.user_not_found, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                String hash = PasswordUtil.hashPassword(p, user.salt);
+                if (!hash.equals(user.passwordHash)) {
+                    Toast.makeText(this, R.string.invalid_credentials, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                session.login(user.id, user.username);
+                goToMain();
+            });
         });
 
         linkRegister.setOnClickListener(v -> {
@@ -64,6 +68,12 @@ public class LoginActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        lifetime.cancel();
+    }
+
     private void goToMain() {
         Intent i = new Intent(this, MainActivity.class);
         i.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -1,25 +1,26 @@
 package com.example.mymediaplayer;
 
 import android.annotation.SuppressLint;
-import android.content.ContentUris;
+import android.content.ComponentName;
 import android.content.Intent;
-import android.database.Cursor;
+import android.content.ServiceConnection;
 import android.media.AudioManager;
-import android.media.MediaPlayer;
-import android.media.PlaybackParams;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.IBinder;
+import android.text.format.DateUtils;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.PopupMenu;
+import android.widget.ProgressBar;
 import android.widget.SeekBar;
 import android.widget.Spinner;
 import android.widget.TextView;
@@ -34,25 +35,54 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.Lifecycle;
+import androidx.recyclerview.widget.ItemTouchHelper;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import com.example.mymediaplayer.data.AppDatabase;
 import com.example.mymediaplayer.data.PlaylistDao;
 import com.example.mymediaplayer.data.PlaylistEntity;
 import com.example.mymediaplayer.data.PlaylistItemDao;
+import com.example.mymediaplayer.data.PlaylistRepository;
+import com.example.mymediaplayer.data.LibraryTrackEntity;
+import com.example.mymediaplayer.data.TrackMetadataEntity;
 import com.example.mymediaplayer.data.PlaylistItemEntity;
 import com.example.mymediaplayer.data.SessionManager;
+import com.example.mymediaplayer.library.ArtworkLoader;
+import com.example.mymediaplayer.library.LibraryObserver;
+import com.example.mymediaplayer.library.LibraryEngine;
+import com.example.mymediaplayer.library.LibraryStore;
+import com.example.mymediaplayer.library.MediaStoreSync;
+import com.example.mymediaplayer.library.MetadataEnricher;
+import com.example.mymediaplayer.library.SectionIndex;
+import com.example.mymediaplayer.playback.MediaItem;
+import com.example.mymediaplayer.playback.PlaybackService;
+import com.example.mymediaplayer.playback.ProgressTicker;
+import com.example.mymediaplayer.playback.TimeFormatter;
+import com.example.mymediaplayer.task.CancellationToken;
+import com.example.mymediaplayer.task.TaskScheduler;
+import com.example.mymediaplayer.ui.ListDiffer;
+import com.example.mymediaplayer.ui.SectionIndexBar;
 
-import java.text.Collator;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public class MainActivity extends AppCompatActivity {
 
-    private MediaPlayer mediaPlayer;
-    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Bound while the activity is started; owns the player and the queue
+    @Nullable
+    private PlaybackService playback;
+    private boolean playbackBound = false;
+    // A play request (picked file, loaded playlist page) that arrived while the service was
+    // unbound, e.g. between onStart and onServiceConnected; replayed once it connects
+    @Nullable
+    private Runnable pendingPlayback;
 
     private SeekBar seekBar;
     private SeekBar volumeSeekBar;
@@ -76,41 +106,97 @@ public class MainActivity extends AppCompatActivity {
     private final float[] speeds = new float[]{1f, 1.5f, 0.75f};
     private int speedIndex = 0;
 
-    private final Runnable updateProgress = new Runnable() {
-        @Override
-        public void run() {
-            if (mediaPlayer != null && seekBar != null) {
-                try {
-                    int pos = mediaPlayer.getCurrentPosition();
-                    seekBar.setProgress(pos);
-                    if (currentTimeText != null) currentTimeText.setText(formatMs(pos));
-                } catch (Exception ignored) {}
-            }
-            handler.postDelayed(this, 500);
-        }
-    };
+    // One formatter per TextView: setText(char[], ...) keeps a reference to the buffer
+    private final TimeFormatter currentTimeFormatter = new TimeFormatter();
+    private final TimeFormatter totalTimeFormatter = new TimeFormatter();
+
+    private final ProgressTicker progressTicker = new ProgressTicker(new ProgressTicker.Source() {
+        @Override public boolean isPlaying() { return playback != null && playback.isPlaying(); }
+        @Override public int getPosition() { return playback == null ? 0 : playback.getCurrentPosition(); }
+        @Override public float getSpeed() { return playback == null ? 1f : playback.getSpeed(); }
+    }, pos -> {
+        if (playback == null || !playback.hasTrack()) return;
+        if (seekBar != null) seekBar.setProgress(pos);
+        if (currentTimeText != null) currentTimeFormatter.show(currentTimeText, pos);
+    });
 
     private ActivityResultLauncher<Intent> audioPickerLauncher;
     private ActivityResultLauncher<String[]> permissionLauncher;
 
-    private final List<MediaItem> library = new ArrayList<>();
-    private final List<MediaItem> filteredLibrary = new ArrayList<>();
-    private final List<MediaItem> playQueue = new ArrayList<>();
+    private MediaStoreSync mediaStoreSync;
+    private MetadataEnricher metadataEnricher;
+    private ArtworkLoader artworkLoader;
+    // Runs an incremental sync whenever MediaStore reports changes
+    private LibraryObserver libraryObserver;
+
+    // All background work goes through the shared scheduler; `lifetime` is cancelled in
+    // onDestroy so nothing is delivered to a dead activity
+    private final TaskScheduler tasks = TaskScheduler.getInstance();
+    private final CancellationToken lifetime = new CancellationToken();
+    // Serialises cache loads and syncs so deltas always apply on top of the loaded cache
+    private final Executor libraryLane = tasks.serial(tasks.io());
+    // Metadata enrichment can take minutes on a cold cache; it gets its own lane so syncs
+    // don't wait behind it
+    private final Executor metadataLane = tasks.serial(tasks.io());
+    // Columnar track store plus search and sort, all run off the main thread; the dialog shows
+    // the latest snapshot it publishes
+    private final LibraryEngine libraryEngine = new LibraryEngine(tasks, lifetime);
+    // State of the open library dialog, so loading chunks can be shown as they arrive
+    @Nullable
+    private LibraryAdapter libraryAdapter;
+    @Nullable
+    private ProgressBar libraryProgress;
+    private boolean libraryLoading = false;
 
     // Persistent storage for per-user playlists
-    private AppDatabase db;
-    private PlaylistDao playlistDao;
-    private PlaylistItemDao playlistItemDao;
+    private PlaylistRepository playlists;
     private SessionManager sessionManager;
     private int currentUserId = -1;
 
-    // Queue playback state
-    private boolean playingFromQueue = false;
-    private int queueIndex = -1;
+    // Bundled sample track, loaded on first connect when the service has nothing loaded yet
+    private int bundledResId = 0;
+
+    private final PlaybackService.Listener playbackListener = new PlaybackService.Listener() {
+        @Override
+        public void onTrackChanged(int durationMs) {
+            syncTrackUi(durationMs);
+        }
 
-    // Debounce handler for search
-    private final Handler uiHandler = new Handler(Looper.getMainLooper());
-    private Runnable pendingSearch;
+        @Override
+        public void onPlayStateChanged(boolean playing) {
+            if (playPauseButton != null) {
+                playPauseButton.setImageResource(playing ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play);
+            }
+            progressTicker.update();
+        }
+
+        @Override
+        public void onPlaybackEnded() {
+            // End of single track or queue; reset UI
+            if (playPauseButton != null) playPauseButton.setImageResource(android.R.drawable.ic_media_play);
+            if (seekBar != null) seekBar.setProgress(0);
+            progressTicker.stop();
+        }
+
+        @Override
+        public void onError(@NonNull String message) {
+            Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    private final ServiceConnection playbackConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            playback = ((PlaybackService.LocalBinder) binder).getService();
+            playback.addListener(playbackListener);
+            onPlaybackConnected();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            playback = null;
+        }
+    };
 
     @SuppressLint("DiscouragedApi")
     @Override
@@ -128,10 +214,15 @@ public class MainActivity extends AppCompatActivity {
 
         setContentView(R.layout.activity_main);
 
-        // init DB
-        db = AppDatabase.getInstance(this);
-        playlistDao = db.playlistDao();
-        playlistItemDao = db.playlistItemDao();
+        playlists = new PlaylistRepository(this);
+
+        // library is searchable from the local cache before MediaStore is touched
+        mediaStoreSync = new MediaStoreSync(this);
+        metadataEnricher = new MetadataEnricher(this, tasks.io());
+        artworkLoader = new ArtworkLoader(this, getResources().getDimensionPixelSize(R.dimen.library_art_size));
+        loadLibraryFromCache();
+        libraryObserver = new LibraryObserver(this, this::loadLibraryFromMediaStore);
+        if (hasAudioPermission()) libraryObserver.register();
 
         // register permission launcher
         permissionLauncher = registerForActivityResult(new ActivityResultContracts.RequestMultiplePermissions(), result -> {
@@ -140,6 +231,7 @@ public class MainActivity extends AppCompatActivity {
                 if (Boolean.TRUE.equals(e.getValue())) { granted = true; break; }
             }
             if (granted) {
+                libraryObserver.register();
                 loadLibraryFromMediaStore();
                 openLibraryDialog();
             } else {
@@ -175,6 +267,7 @@ public class MainActivity extends AppCompatActivity {
         if (signOutButton != null) {
             signOutButton.setOnClickListener(v -> {
                 sessionManager.logout();
+                stopService(new Intent(this, PlaybackService.class));
                 Toast.makeText(this, R.string.signed_out, Toast.LENGTH_SHORT).show();
                 Intent i = new Intent(this, LoginActivity.class);
                 i.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -208,48 +301,40 @@ public class MainActivity extends AppCompatActivity {
             if (result.getResultCode() == RESULT_OK && result.getData() != null) {
                 Uri uri = result.getData().getData();
                 if (uri != null) {
-                    prepareMediaPlayer(uri);
+                    prepareMediaPlayer(uri, uri.getLastPathSegment(), null);
                 }
             }
         });
 
-        int resId = getResources().getIdentifier("sample_audio", "raw", getPackageName());
-        if (resId != 0) {
-            prepareMediaPlayer(resId);
-        } else {
-            // no bundled audio found; prompt user to pick one
-            titleText.setText(R.string.tap_load_audio);
+        // disable playback buttons until the service reports a loaded track
+        setControlsEnabled(false);
+        bundledResId = getResources().getIdentifier("sample_audio", "raw", getPackageName());
+        if (bundledResId == 0) {
+            // no bundled audio found; let the user pick one
             titleText.setOnClickListener(v -> openAudioPicker());
-            // disable playback buttons until audio loaded
-            setControlsEnabled(false);
         }
 
         // Play/pause
         if (playPauseButton != null) {
             playPauseButton.setOnClickListener(v -> {
-                if (mediaPlayer == null) return;
-                if (mediaPlayer.isPlaying()) {
-                    mediaPlayer.pause();
-                    playPauseButton.setImageResource(android.R.drawable.ic_media_play);
-                } else {
-                    mediaPlayer.start();
-                    playPauseButton.setImageResource(android.R.drawable.ic_media_pause);
-                    handler.post(updateProgress);
-                }
+                if (playback == null || !playback.hasTrack()) return;
+                if (playback.isPlaying()) playback.pause();
+                else playback.play();
             });
         }
 
         // Skip forward 15s
         if (skipForwardButton != null) {
             skipForwardButton.setOnClickListener(v -> {
-                if (playingFromQueue && canSkipNext()) {
+                if (playback == null) return;
+                if (playback.canSkipNext()) {
                     skipToNextInQueue();
                 } else {
-                    if (mediaPlayer == null) return;
-                    int pos = mediaPlayer.getCurrentPosition();
-                    int target = Math.min(pos + 15_000, mediaPlayer.getDuration());
-                    mediaPlayer.seekTo(target);
-                    if (seekBar != null) seekBar.setProgress(target);
+                    if (!playback.hasTrack()) return;
+                    int pos = playback.getCurrentPosition();
+                    int target = Math.min(pos + 15_000, playback.getDuration());
+                    playback.seekTo(target);
+                    progressTicker.update();
                 }
             });
         }
@@ -257,14 +342,15 @@ public class MainActivity extends AppCompatActivity {
         // Skip backward 15s or previous track if in queue
         if (skipBackwardButton != null) {
             skipBackwardButton.setOnClickListener(v -> {
-                if (playingFromQueue && canSkipPrev()) {
+                if (playback == null) return;
+                if (playback.canSkipPrev()) {
                     skipToPreviousInQueue();
                 } else {
-                    if (mediaPlayer == null) return;
-                    int pos = mediaPlayer.getCurrentPosition();
+                    if (!playback.hasTrack()) return;
+                    int pos = playback.getCurrentPosition();
                     int target = Math.max(pos - 15_000, 0);
-                    mediaPlayer.seekTo(target);
-                    if (seekBar != null) seekBar.setProgress(target);
+                    playback.seekTo(target);
+                    progressTicker.update();
                 }
             });
         }
@@ -273,9 +359,9 @@ public class MainActivity extends AppCompatActivity {
         if (seekBar != null) {
             seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
                 @Override public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                    if (fromUser && mediaPlayer != null) {
-                        mediaPlayer.seekTo(progress);
-                        if (currentTimeText != null) currentTimeText.setText(formatMs(progress));
+                    if (fromUser && playback != null && playback.hasTrack()) {
+                        playback.seekTo(progress);
+                        if (currentTimeText != null) currentTimeFormatter.show(currentTimeText, progress);
                     }
                 }
                 @Override public void onStartTrackingTouch(SeekBar seekBar) {}
@@ -305,13 +391,11 @@ public class MainActivity extends AppCompatActivity {
         // Playback speed
         if (speedButton != null) {
             speedButton.setOnClickListener(v -> {
-                if (mediaPlayer == null) return;
+                if (playback == null || !playback.hasTrack()) return;
                 speedIndex = (speedIndex + 1) % speeds.length;
                 float nextSpeed = speeds[speedIndex];
                 try {
-                    PlaybackParams params = mediaPlayer.getPlaybackParams();
-                    params.setSpeed(nextSpeed);
-                    mediaPlayer.setPlaybackParams(params);
+                    playback.setSpeed(nextSpeed);
                     speedButton.setText(String.format(Locale.US, "%.2fx", nextSpeed));
                 } catch (Exception e) {
                     Toast.makeText(this, "Playback speed not supported on this device", Toast.LENGTH_SHORT).show();
@@ -337,75 +421,129 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void prepareMediaPlayer(int resId) {
-        try {
-            releasePlayer();
-            mediaPlayer = MediaPlayer.create(this, resId);
-            if (mediaPlayer == null) {
-                Toast.makeText(this, "Failed to load bundled audio", Toast.LENGTH_SHORT).show();
-                return;
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Started as well as bound so playback survives the activity going away
+        Intent intent = new Intent(this, PlaybackService.class);
+        startService(intent);
+        playbackBound = bindService(intent, playbackConnection, BIND_AUTO_CREATE);
+        if (!playbackBound && pendingPlayback != null) {
+            // onServiceConnected will never come to replay it
+            pendingPlayback = null;
+            Toast.makeText(this, "Failed to load audio", Toast.LENGTH_SHORT).show();
+        }
+        progressTicker.setVisible(true);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Nothing on screen to update; the service keeps playing
+        progressTicker.setVisible(false);
+        if (playback != null) {
+            playback.removeListener(playbackListener);
+            playback = null;
+        }
+        if (playbackBound) {
+            unbindService(playbackConnection);
+            playbackBound = false;
+        }
+    }
+
+    // Rotation and returning from the background land here with the track still loaded in the
+    // service; only the UI is resynced.
+    private void onPlaybackConnected() {
+        if (playback == null) return;
+        if (playback.hasTrack()) {
+            if (titleText != null) titleText.setText(playback.getTitle() == null ? "Track" : playback.getTitle());
+            for (int i = 0; i < speeds.length; i++) {
+                if (speeds[i] == playback.getSpeed()) speedIndex = i;
             }
-            afterPlayerPrepared("Bundled audio");
-        } catch (Exception e) {
-            Toast.makeText(this, "Error preparing media: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            if (speedButton != null) speedButton.setText(String.format(Locale.US, "%.2fx", speeds[speedIndex]));
+            syncTrackUi(playback.getDuration());
         }
+        // A request made while unbound replaces whatever the service had loaded
+        Runnable pending = pendingPlayback;
+        pendingPlayback = null;
+        if (pending != null) {
+            pending.run();
+        } else if (!playback.hasTrack()) {
+            if (bundledResId != 0) {
+                prepareMediaPlayer(bundledResId);
+            } else if (titleText != null) {
+                titleText.setText(R.string.tap_load_audio);
+            }
+        }
+    }
+
+    private void prepareMediaPlayer(int resId) {
+        Uri uri = Uri.parse("android.resource://" + getPackageName() + "/" + resId);
+        prepareMediaPlayer(uri, "Bundled audio", null);
     }
 
-    private void prepareMediaPlayer(@NonNull Uri uri) {
+    private void prepareMediaPlayer(@NonNull Uri uri, @Nullable String title, @Nullable String artist) {
+        if (playback == null) {
+            deferPlayback(() -> prepareMediaPlayer(uri, title, artist));
+            return;
+        }
         try {
-            releasePlayer();
-            mediaPlayer = MediaPlayer.create(this, uri);
-            if (mediaPlayer == null) {
+            if (!playback.playSingle(uri, title, artist, false)) {
                 Toast.makeText(this, "Failed to load audio", Toast.LENGTH_SHORT).show();
                 return;
             }
-            afterPlayerPrepared(uri.getLastPathSegment());
+            if (titleText != null) titleText.setText(title == null ? "Track" : title);
         } catch (Exception e) {
             Toast.makeText(this, "Error preparing media: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void afterPlayerPrepared(String title) {
+    // Called for every new current track, including gapless advances in a queue
+    private void syncTrackUi(int durationMs) {
+        if (playback == null) return;
         setControlsEnabled(true);
-        if (titleText != null) titleText.setText(title == null ? "Track" : title);
-        if (seekBar != null) seekBar.setMax(mediaPlayer.getDuration());
-        if (totalTimeText != null) totalTimeText.setText(formatMs(mediaPlayer.getDuration()));
-        handler.post(updateProgress);
-
-        mediaPlayer.setOnCompletionListener(mp -> {
-            if (playingFromQueue && queueIndex >= 0 && queueIndex + 1 < playQueue.size()) {
-                queueIndex++;
-                MediaItem next = playQueue.get(queueIndex);
-                if (next != null) {
-                    prepareMediaPlayer(next.contentUri);
-                    if (mediaPlayer != null) mediaPlayer.start();
-                    if (titleText != null) titleText.setText(next.title);
-                    return;
-                }
-            }
-            // End of single track or queue; reset UI
-            if (playPauseButton != null) playPauseButton.setImageResource(android.R.drawable.ic_media_play);
-            if (seekBar != null) seekBar.setProgress(0);
-            handler.removeCallbacks(updateProgress);
-            playingFromQueue = false;
-            queueIndex = -1;
-        });
+        if (seekBar != null) seekBar.setMax(durationMs);
+        if (totalTimeText != null) {
+            totalTimeFormatter.invalidate();
+            totalTimeFormatter.show(totalTimeText, durationMs);
+        }
+        if (titleText != null && playback.getTitle() != null) titleText.setText(playback.getTitle());
+        if (playPauseButton != null) {
+            playPauseButton.setImageResource(playback.isPlaying() ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play);
+        }
+        progressTicker.update();
+    }
+
+    // Start playing the playlist as a queue from the beginning. Playback starts as soon as the
+    // first page is loaded; the service appends the rest behind it.
+    private void playPlaylist(@NonNull PlaylistEntity playlist) {
+        playlists.itemsAfter(playlist.id, null, lifetime, firstPage -> startQueuePlayback(playlist, firstPage));
     }
 
-    // Start playing the provided list as a queue from the beginning
-    private void startQueuePlayback(@NonNull List<MediaItem> list, @NonNull String playlistName) {
-        if (list.isEmpty()) {
+    private void startQueuePlayback(@NonNull PlaylistEntity playlist, @NonNull List<PlaylistItemEntity> firstPage) {
+        if (firstPage.isEmpty()) {
             Toast.makeText(this, getString(R.string.playlist_empty), Toast.LENGTH_SHORT).show();
             return;
         }
-        playQueue.clear();
-        playQueue.addAll(list);
-        queueIndex = 0;
-        playingFromQueue = true;
-        MediaItem first = playQueue.get(0);
-        prepareMediaPlayer(first.contentUri);
-        if (mediaPlayer != null) mediaPlayer.start();
-        Toast.makeText(this, getString(R.string.playing_playlist, playlistName), Toast.LENGTH_SHORT).show();
+        if (playback == null) {
+            deferPlayback(() -> startQueuePlayback(playlist, firstPage));
+            return;
+        }
+        if (!playback.playPlaylist(playlist.id, firstPage)) {
+            Toast.makeText(this, "Failed to load audio", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Toast.makeText(this, getString(R.string.playing_playlist, playlist.name), Toast.LENGTH_SHORT).show();
+    }
+
+    // Holds a play request until the service connects; the latest request wins
+    private void deferPlayback(@NonNull Runnable request) {
+        if (!playbackBound && getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+            // started but the bind failed, so there is nothing to wait for
+            Toast.makeText(this, "Failed to load audio", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        pendingPlayback = request;
     }
 
     private void setControlsEnabled(boolean enabled) {
@@ -418,191 +556,257 @@ public class MainActivity extends AppCompatActivity {
         if (muteButton != null) muteButton.setEnabled(enabled);
     }
 
-    private String formatMs(int ms) {
-        int totalSeconds = ms / 1000;
-        int minutes = totalSeconds / 60;
-        int seconds = totalSeconds % 60;
-        return String.format(Locale.US, "%d:%02d", minutes, seconds);
-    }
-
-    private void releasePlayer() {
-        handler.removeCallbacks(updateProgress);
-        if (mediaPlayer != null) {
-            try {
-                if (mediaPlayer.isPlaying()) mediaPlayer.stop();
-            } catch (Exception ignored) {}
-            try { mediaPlayer.release(); } catch (Exception ignored) {}
-            mediaPlayer = null;
-        }
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // thumbnails are cheap to reload from the disk cache
+        if (level >= TRIM_MEMORY_UI_HIDDEN && artworkLoader != null) artworkLoader.trimMemory();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        releasePlayer();
+        progressTicker.stop();
+        if (libraryObserver != null) libraryObserver.unregister();
+        lifetime.cancel();
     }
 
-    // MediaItem model
-    private static class MediaItem {
-        final long id;
-        final String title;
-        final String artist;
-        final String album;
-        final long dateAdded;
-        final Uri contentUri;
-
-        MediaItem(long id, String title, String artist, String album, long dateAdded, Uri contentUri) {
-            this.id = id;
-            this.title = title;
-            this.artist = artist;
-            this.album = album;
-            this.dateAdded = dateAdded;
-            this.contentUri = contentUri;
+    // Adapter: library rows with Add to Queue and Add to Playlist buttons. Reads straight from
+    // the snapshot the differ is showing; a MediaItem is only built for the row that is tapped.
+    private class LibraryAdapter extends RecyclerView.Adapter<LibraryAdapter.Holder> {
+        final ListDiffer<LibraryStore.Snapshot> differ = new ListDiffer<>(this, new ListDiffer.Items<LibraryStore.Snapshot>() {
+            @Override
+            public int size(@NonNull LibraryStore.Snapshot list) {
+                return list.size();
+            }
+
+            @Override
+            public long idAt(@NonNull LibraryStore.Snapshot list, int position) {
+                return list.idAt(position);
+            }
+
+            @Override
+            public boolean sameContents(@NonNull LibraryStore.Snapshot a, int i, @NonNull LibraryStore.Snapshot b, int j) {
+                return a.titleAt(i).equals(b.titleAt(j)) && Objects.equals(a.artistAt(i), b.artistAt(j))
+                        && a.durationAt(i) == b.durationAt(j);
+            }
+        }, LibraryStore.Snapshot.EMPTY, tasks, lifetime);
+
+        class Holder extends RecyclerView.ViewHolder {
+            final TextView title;
+            final TextView duration;
+            final ImageView art;
+            // One per row: setText(char[], ...) keeps a reference to the buffer
+            final TimeFormatter durationFormatter = new TimeFormatter();
+
+            Holder(View v) {
+                super(v);
+                title = v.findViewById(R.id.item_title);
+                duration = v.findViewById(R.id.item_duration);
+                art = v.findViewById(R.id.item_art);
+                v.setOnClickListener(view -> {
+                    MediaItem m = itemAt(getBindingAdapterPosition());
+                    if (m == null) return;
+                    // playing a single item from library leaves queue mode
+                    prepareMediaPlayer(m.contentUri, m.title, m.artist);
+                    if (playback != null) playback.play();
+                    Toast.makeText(MainActivity.this, getString(R.string.playing_prefix) + m.title, Toast.LENGTH_SHORT).show();
+                });
+                v.findViewById(R.id.btn_add).setOnClickListener(view -> {
+                    PopupMenu popup = new PopupMenu(MainActivity.this, view);
+                    popup.getMenu().add(0, 1, 0, getString(R.string.add_to_queue));
+                    popup.getMenu().add(0, 2, 1, getString(R.string.add_to_playlist));
+                    popup.getMenu().add(0, 3, 2, getString(R.string.add_album_to_playlist));
+                    popup.setOnMenuItemClickListener(menuItem -> {
+                        MediaItem m = itemAt(getBindingAdapterPosition());
+                        if (m == null) return false;
+                        int id = menuItem.getItemId();
+                        if (id == 1) {
+                            if (playback != null) playback.addToQueue(m);
+                            Toast.makeText(MainActivity.this, getString(R.string.added_to, getString(R.string.queue)), Toast.LENGTH_SHORT).show();
+                            return true;
+                        } else if (id == 2) {
+                            showAddToPlaylistDialog(Collections.singletonList(m));
+                            return true;
+                        } else if (id == 3) {
+                            libraryEngine.albumOf(m.id, album -> showAddToPlaylistDialog(toMediaItems(album)));
+                            return true;
+                        }
+                        return false;
+                    });
+                    popup.show();
+                });
+            }
+        }
+
+        LibraryAdapter() {
+            setHasStableIds(true);
+        }
+
+        @Nullable
+        MediaItem itemAt(int position) {
+            LibraryStore.Snapshot snapshot = differ.current();
+            if (position == RecyclerView.NO_POSITION || position >= snapshot.size()) return null;
+            return MediaStoreSync.toMediaItem(snapshot, position);
         }
 
-        @NonNull
         @Override
-        public String toString() {
-            if (artist != null && !artist.isEmpty()) return title + " — " + artist;
-            return title;
+        public int getItemCount() {
+            return differ.current().size();
         }
-    }
 
-    // Adapter: library rows with Add to Queue and Add to Playlist buttons
-    private class LibraryAdapter extends ArrayAdapter<MediaItem> {
-        public LibraryAdapter(android.content.Context ctx, List<MediaItem> items) {
-            super(ctx, 0, items);
+        @Override
+        public long getItemId(int position) {
+            return differ.current().idAt(position);
         }
 
         @NonNull
         @Override
-        public View getView(int position, @Nullable View convertView, @NonNull android.view.ViewGroup parent) {
-            View v = convertView;
-            if (v == null) {
-                v = getLayoutInflater().inflate(R.layout.item_library, parent, false);
-            }
-            MediaItem item = getItem(position);
-            TextView title = v.findViewById(R.id.item_title);
-            android.widget.ImageButton btnAdd = v.findViewById(R.id.btn_add);
-
-            title.setText(item == null ? "" : item.title + (item.artist != null && !item.artist.isEmpty() ? " — " + item.artist : ""));
-
-            // Tag the view with the current item for reliable retrieval on click
-            v.setTag(item);
-            v.setOnClickListener(view -> {
-                MediaItem m = (MediaItem) view.getTag();
-                if (m != null) {
-                    // exit queue mode when playing a single item from library
-                    playingFromQueue = false;
-                    queueIndex = -1;
-                    prepareMediaPlayer(m.contentUri);
-                    if (mediaPlayer != null) mediaPlayer.start();
-                    Toast.makeText(MainActivity.this, getString(R.string.playing_prefix) + m.title, Toast.LENGTH_SHORT).show();
-                }
-            });
+        public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new Holder(getLayoutInflater().inflate(R.layout.item_library, parent, false));
+        }
 
-            btnAdd.setOnClickListener(view -> {
-                if (item == null) return;
-                PopupMenu popup = new PopupMenu(MainActivity.this, view);
-                popup.getMenu().add(0, 1, 0, getString(R.string.add_to_queue));
-                popup.getMenu().add(0, 2, 1, getString(R.string.add_to_playlist));
-                popup.setOnMenuItemClickListener(menuItem -> {
-                    int id = menuItem.getItemId();
-                    if (id == 1) {
-                        playQueue.add(item);
-                        Toast.makeText(MainActivity.this, getString(R.string.added_to, getString(R.string.queue)), Toast.LENGTH_SHORT).show();
-                        return true;
-                    } else if (id == 2) {
-                        showAddToPlaylistDialog(item);
-                        return true;
-                    }
-                    return false;
-                });
-                popup.show();
-            });
+        @Override
+        public void onBindViewHolder(@NonNull Holder h, int position) {
+            LibraryStore.Snapshot snapshot = differ.current();
+            String artist = snapshot.artistAt(position);
+            h.title.setText(snapshot.titleAt(position) + (artist != null && !artist.isEmpty() ? " — " + artist : ""));
+            artworkLoader.bind(h.art, snapshot.idAt(position), snapshot.dateModifiedAt(position));
+            h.durationFormatter.invalidate();
+            int durationMs = snapshot.durationAt(position);
+            if (durationMs > 0) h.durationFormatter.show(h.duration, durationMs);
+            else h.duration.setText("");
+        }
 
-            return v;
+        // rows that scroll away stop loading their artwork
+        @Override
+        public void onViewRecycled(@NonNull Holder h) {
+            artworkLoader.cancel(h.art);
         }
     }
 
-    // Adapter: rows with remove icon, backed by a mutable list
-    private class RemoveAdapter extends ArrayAdapter<MediaItem> {
+    // Adapter: rows with remove icon, backed by a mutable list. For the play queue the list is a
+    // copy taken when the dialog opened, since the service keeps appending to its own queue
+    private class RemoveAdapter extends RecyclerView.Adapter<RemoveAdapter.Holder> {
         private final List<MediaItem> items;
-        public RemoveAdapter(android.content.Context ctx, List<MediaItem> items) {
-            super(ctx, 0, items);
+        private final boolean playQueue;
+
+        class Holder extends RecyclerView.ViewHolder {
+            final TextView title;
+
+            Holder(View v) {
+                super(v);
+                title = v.findViewById(R.id.item_title);
+                v.findViewById(R.id.btn_remove).setOnClickListener(view -> {
+                    int position = getBindingAdapterPosition();
+                    if (position >= 0 && position < items.size()) {
+                        // appends don't shift positions, but skip it if the queue was replaced
+                        if (playQueue && playback != null) {
+                            List<MediaItem> live = playback.getQueue();
+                            if (position < live.size() && live.get(position) == items.get(position)) {
+                                playback.removeFromQueue(position);
+                            }
+                        }
+                        items.remove(position);
+                        notifyItemRemoved(position);
+                    }
+                });
+            }
+        }
+
+        RemoveAdapter(List<MediaItem> items, boolean playQueue) {
             this.items = items;
+            this.playQueue = playQueue;
+        }
+
+        @Override
+        public int getItemCount() {
+            return items.size();
         }
 
         @NonNull
         @Override
-        public View getView(int position, @Nullable View convertView, @NonNull android.view.ViewGroup parent) {
-            View v = convertView;
-            if (v == null) {
-                v = getLayoutInflater().inflate(R.layout.item_with_remove, parent, false);
-            }
-            MediaItem item = getItem(position);
-            TextView title = v.findViewById(R.id.item_title);
-            android.widget.ImageButton btnRemove = v.findViewById(R.id.btn_remove);
+        public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new Holder(getLayoutInflater().inflate(R.layout.item_with_remove, parent, false));
+        }
 
-            title.setText(item == null ? "" : item.title + (item.artist != null && !item.artist.isEmpty() ? " — " + item.artist : ""));
+        @Override
+        public void onBindViewHolder(@NonNull Holder h, int position) {
+            MediaItem item = items.get(position);
+            h.title.setText(item.title + (item.artist != null && !item.artist.isEmpty() ? " — " + item.artist : ""));
+        }
+    }
 
-            btnRemove.setOnClickListener(view -> {
-                if (position >= 0 && position < items.size()) {
-                    items.remove(position);
-                    notifyDataSetChanged();
-                }
-            });
+    // Vertical list for a dialog
+    private RecyclerView newDialogList() {
+        RecyclerView rv = new RecyclerView(this);
+        rv.setLayoutManager(new LinearLayoutManager(this));
+        return rv;
+    }
 
-            return v;
-        }
+    // Load the cached library into the engine on background thread, publishing it in chunks
+    private void loadLibraryFromCache() {
+        libraryLoading = true;
+        tasks.submit(libraryLane, lifetime, token -> mediaStoreSync.loadCached(token, this::postLibraryChunk), loaded -> {
+            if (loaded == 0) finishLibraryLoading();
+            refreshMetadata(true);
+        });
     }
 
-    // Load device media into `library` on background thread
+    // Bring the cache up to date with MediaStore and apply only what changed to the engine.
+    // A full rescan (first run, or MediaStore was rebuilt) is streamed in chunks instead.
+    // Requests made while a sync is still queued (permission grant plus a burst of observer
+    // callbacks) share that one pass.
     private void loadLibraryFromMediaStore() {
-        new Thread(() -> {
-            List<MediaItem> tmp = new ArrayList<>();
-            Uri uri = android.provider.MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
-            String[] projection = new String[]{
-                    android.provider.MediaStore.Audio.Media._ID,
-                    android.provider.MediaStore.Audio.Media.TITLE,
-                    android.provider.MediaStore.Audio.Media.ARTIST,
-                    android.provider.MediaStore.Audio.Media.ALBUM,
-                    android.provider.MediaStore.Audio.Media.DATE_ADDED
-            };
-            Cursor c = null;
-            try {
-                c = getContentResolver().query(uri, projection, null, null, null);
-                if (c != null) {
-                    int idCol = c.getColumnIndexOrThrow(android.provider.MediaStore.Audio.Media._ID);
-                    int titleCol = c.getColumnIndexOrThrow(android.provider.MediaStore.Audio.Media.TITLE);
-                    int artistCol = c.getColumnIndexOrThrow(android.provider.MediaStore.Audio.Media.ARTIST);
-                    int albumCol = c.getColumnIndexOrThrow(android.provider.MediaStore.Audio.Media.ALBUM);
-                    int dateCol = c.getColumnIndexOrThrow(android.provider.MediaStore.Audio.Media.DATE_ADDED);
-                    while (c.moveToNext()) {
-                        long id = c.getLong(idCol);
-                        String title = c.getString(titleCol);
-                        String artist = c.getString(artistCol);
-                        String album = c.getString(albumCol);
-                        long dateAdded = c.getLong(dateCol);
-                        Uri contentUri = ContentUris.withAppendedId(uri, id);
-                        tmp.add(new MediaItem(id, title == null ? "Unknown" : title, artist, album, dateAdded, contentUri));
-                    }
-                }
-            } catch (Exception e) {
-                runOnUiThread(() -> Toast.makeText(this, "Failed to load media: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            } finally {
-                if (c != null) c.close();
-            }
+        tasks.submit(libraryLane, "library-sync", lifetime,
+                token -> mediaStoreSync.sync(token, this::postLibraryChunk),
+                delta -> {
+                    if (!delta.isEmpty() && !delta.full) libraryEngine.applyDelta(delta.upserted, delta.removedIds);
+                    // a full rescan rebuilt the store, so cached metadata has to be applied again
+                    if (!delta.isEmpty()) refreshMetadata(delta.full);
+                },
+                e -> {
+                    finishLibraryLoading();
+                    Toast.makeText(this, "Failed to load media: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+    }
 
-            // update library on UI thread
-            runOnUiThread(() -> {
-                library.clear();
-                library.addAll(tmp);
-                // default filtered view = library
-                filteredLibrary.clear();
-                filteredLibrary.addAll(library);
-            });
-        }).start();
+    // Worker thread; chunks go through the main thread so progress and the engine see them in order
+    private void postLibraryChunk(List<LibraryTrackEntity> chunk, int loaded, int total) {
+        boolean first = loaded == chunk.size();
+        tasks.post(lifetime, () -> appendLibraryChunk(chunk, first, loaded, total));
+    }
+
+    private void appendLibraryChunk(List<LibraryTrackEntity> chunk, boolean first, int loaded, int total) {
+        if (first) libraryLoading = true;
+        libraryEngine.appendChunk(chunk, first);
+        if (libraryProgress != null) {
+            libraryProgress.setVisibility(View.VISIBLE);
+            libraryProgress.setMax(Math.max(total, 1));
+            libraryProgress.setProgress(loaded);
+        }
+        if (loaded >= total) finishLibraryLoading();
+    }
+
+    private void finishLibraryLoading() {
+        libraryLoading = false;
+        libraryEngine.finishLoading();
+        if (libraryProgress != null) libraryProgress.setVisibility(View.GONE);
+    }
+
+    // Apply cached metadata (after the store was (re)filled) and then extract it for any track
+    // that has none or whose file changed. Extraction needs MediaStore access.
+    private void refreshMetadata(boolean reloadCached) {
+        boolean canEnrich = hasAudioPermission();
+        tasks.submit(metadataLane, reloadCached ? "metadata-reload" : "metadata-enrich", lifetime, token -> {
+            if (reloadCached) postMetadata(metadataEnricher.loadCached());
+            return canEnrich ? metadataEnricher.enrich(token, this::postMetadata) : 0;
+        }, null, null);
+    }
+
+    // Worker thread
+    private void postMetadata(List<TrackMetadataEntity> batch) {
+        if (!batch.isEmpty()) tasks.post(lifetime, () -> libraryEngine.applyMetadata(batch));
     }
 
     // Open a dialog that shows library with search + sort + item actions
@@ -610,30 +814,43 @@ public class MainActivity extends AppCompatActivity {
         View dlgView = getLayoutInflater().inflate(R.layout.dialog_media_library, null);
         android.widget.SearchView searchView = dlgView.findViewById(R.id.dialog_search);
         Spinner sortSpinner = dlgView.findViewById(R.id.dialog_sort_spinner);
-        ListView listView = dlgView.findViewById(R.id.dialog_list);
+        RecyclerView listView = dlgView.findViewById(R.id.dialog_list);
+        SectionIndexBar sectionBar = dlgView.findViewById(R.id.dialog_section_index);
         Button btnQueue = dlgView.findViewById(R.id.btn_show_queue);
         Button btnPlaylists = dlgView.findViewById(R.id.btn_manage_playlists);
+        Button btnAddAll = dlgView.findViewById(R.id.btn_add_all);
+
+        ProgressBar progress = dlgView.findViewById(R.id.dialog_progress);
 
         // Adapter for list view showing title — artist with action buttons
-        LibraryAdapter adapter = new LibraryAdapter(this, filteredLibrary);
+        LibraryAdapter adapter = new LibraryAdapter();
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        listView.setLayoutManager(layoutManager);
         listView.setAdapter(adapter);
+        // Fast scroll: sections come with each sorted snapshot, and a jump goes straight to the
+        // section's first position
+        adapter.differ.setOnCurrentChanged(() -> sectionBar.setLabels(adapter.differ.current().sections().labels()));
+        sectionBar.setListener(section -> {
+            SectionIndex sections = adapter.differ.current().sections();
+            if (section < sections.size()) layoutManager.scrollToPositionWithOffset(sections.positionFor(section), 0);
+        });
+        libraryAdapter = adapter;
+        libraryProgress = progress;
+        libraryEngine.setQuery(null);
+        libraryEngine.setListener(adapter.differ::submit);
+        progress.setVisibility(libraryLoading ? View.VISIBLE : View.GONE);
 
         // Sort options
-        String[] sortOptions = new String[]{"Title", "Artist", "Recently added"};
+        String[] sortOptions = new String[]{"Title", "Artist", "Recently added", "Duration", "Best match"};
         ArrayAdapter<String> sa = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, sortOptions);
         sa.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         sortSpinner.setAdapter(sa);
 
         sortSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            final Collator collator = Collator.getInstance(Locale.getDefault());
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                Comparator<MediaItem> comp;
-                if (position == 0) comp = (a, b) -> collator.compare(a.title, b.title);
-                else if (position == 1) comp = (a, b) -> collator.compare(a.artist == null ? "" : a.artist, b.artist == null ? "" : b.artist);
-                else comp = (a, b) -> Long.compare(b.dateAdded, a.dateAdded);
-                filteredLibrary.sort(comp);
-                adapter.notifyDataSetChanged();
+                // spinner positions line up with the engine's SORT_ constants
+                libraryEngine.setSort(position);
             }
             @Override public void onNothingSelected(AdapterView<?> parent) {}
         });
@@ -642,19 +859,22 @@ public class MainActivity extends AppCompatActivity {
         searchView.setOnQueryTextListener(new android.widget.SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                doFilter(query, adapter);
+                doFilter(query);
                 return true;
             }
 
+            // Searching runs on the engine's worker and superseded queries are skipped there, so
+            // every keystroke can go straight through
             @Override
             public boolean onQueryTextChange(String newText) {
-                if (pendingSearch != null) uiHandler.removeCallbacks(pendingSearch);
-                pendingSearch = () -> doFilter(newText, adapter);
-                uiHandler.postDelayed(pendingSearch, 200);
+                doFilter(newText);
                 return true;
             }
         });
 
+        // everything the current search shows, in the order shown
+        btnAddAll.setOnClickListener(v -> showAddToPlaylistDialog(toMediaItems(adapter.differ.current())));
+
         // show queue
         btnQueue.setOnClickListener(v -> showQueueDialog());
 
@@ -666,29 +886,28 @@ public class MainActivity extends AppCompatActivity {
                 .setTitle(getString(R.string.media_library_title))
                 .setView(dlgView)
                 .setPositiveButton(getString(R.string.close), null)
+                .setOnDismissListener(d -> {
+                    if (libraryAdapter == adapter) {
+                        libraryAdapter = null;
+                        libraryProgress = null;
+                        libraryEngine.setListener(null);
+                        libraryEngine.setSort(LibraryEngine.SORT_NONE);
+                    }
+                })
                 .show();
     }
 
-    private void doFilter(String q, ArrayAdapter<MediaItem> adapter) {
-        String nq = q == null ? "" : q.trim().toLowerCase(Locale.ROOT);
-        filteredLibrary.clear();
-        if (nq.isEmpty()) filteredLibrary.addAll(library);
-        else {
-            for (MediaItem m : library) {
-                if ((m.title != null && m.title.toLowerCase(Locale.ROOT).contains(nq))
-                        || (m.artist != null && m.artist.toLowerCase(Locale.ROOT).contains(nq))
-                        || (m.album != null && m.album.toLowerCase(Locale.ROOT).contains(nq))) {
-                    filteredLibrary.add(m);
-                }
-            }
-        }
-        adapter.notifyDataSetChanged();
+    private void doFilter(String q) {
+        libraryEngine.setQuery(q);
     }
 
     // Show play queue with ability to remove items
     private void showQueueDialog() {
-        RemoveAdapter adapter = new RemoveAdapter(this, playQueue);
-        ListView lv = new ListView(this);
+        if (playback == null) return;
+        PlaybackService svc = playback;
+        List<MediaItem> playQueue = svc.getQueue();
+        RemoveAdapter adapter = new RemoveAdapter(new ArrayList<>(playQueue), true);
+        RecyclerView lv = newDialogList();
 
         // Header with previous/now playing/next and prev/next buttons
         android.widget.LinearLayout header = new android.widget.LinearLayout(this);
@@ -735,15 +954,16 @@ public class MainActivity extends AppCompatActivity {
 
         // helper to update header state
         Runnable updateHeader = () -> {
-            if (playingFromQueue && queueIndex >= 0 && queueIndex < playQueue.size()) {
+            int queueIndex = svc.getQueueIndex();
+            if (svc.isPlayingFromQueue() && queueIndex >= 0 && queueIndex < playQueue.size()) {
                 MediaItem current = playQueue.get(queueIndex);
                 MediaItem prev = queueIndex > 0 ? playQueue.get(queueIndex - 1) : null;
                 MediaItem next = (queueIndex + 1 < playQueue.size()) ? playQueue.get(queueIndex + 1) : null;
                 tvNow.setText(displayFor(current));
                 tvPrev.setText(prev == null ? "-" : displayFor(prev));
                 tvNext.setText(next == null ? "-" : displayFor(next));
-                btnPrev.setEnabled(canSkipPrev());
-                btnNext.setEnabled(canSkipNext());
+                btnPrev.setEnabled(svc.canSkipPrev());
+                btnNext.setEnabled(svc.canSkipNext());
             } else {
                 tvNow.setText(getString(R.string.not_playing_from_queue));
                 tvPrev.setText("-");
@@ -762,12 +982,15 @@ public class MainActivity extends AppCompatActivity {
             updateHeader.run();
         });
 
-        lv.addHeaderView(header, null, false);
         lv.setAdapter(adapter);
+        android.widget.LinearLayout content = new android.widget.LinearLayout(this);
+        content.setOrientation(android.widget.LinearLayout.VERTICAL);
+        content.addView(header);
+        content.addView(lv, new android.widget.LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
 
         new AlertDialog.Builder(this)
                 .setTitle(getString(R.string.play_queue_title))
-                .setView(lv)
+                .setView(content)
                 .setPositiveButton(getString(R.string.close), null)
                 .show();
 
@@ -777,10 +1000,39 @@ public class MainActivity extends AppCompatActivity {
 
     // Manage playlists (create, view)
     private void showPlaylistsDialog() {
-        List<PlaylistEntity> pls = playlistDao.getPlaylistsForUser(currentUserId);
-        List<String> names = new ArrayList<>();
-        for (PlaylistEntity p : pls) names.add(p.name);
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, names);
+        playlists.summariesFor(currentUserId, lifetime, this::showPlaylistsDialog);
+    }
+
+    private void showPlaylistsDialog(List<PlaylistDao.Summary> summaries) {
+        List<PlaylistEntity> pls = new ArrayList<>(summaries.size());
+        Map<Integer, PlaylistDao.Summary> summaryById = new HashMap<>();
+        for (PlaylistDao.Summary s : summaries) {
+            pls.add(s.playlist);
+            summaryById.put(s.playlist.id, s);
+        }
+        // Name, track count and length, and the first track's artwork; playlists created here
+        // have no summary and show as empty
+        ArrayAdapter<PlaylistEntity> adapter = new ArrayAdapter<PlaylistEntity>(this, R.layout.item_playlist, R.id.item_title, pls) {
+            @NonNull
+            @Override
+            public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+                View row = super.getView(position, convertView, parent);
+                PlaylistEntity p = pls.get(position);
+                PlaylistDao.Summary s = summaryById.get(p.id);
+                ((TextView) row.findViewById(R.id.item_title)).setText(p.name);
+                int count = s == null ? 0 : s.itemCount;
+                long seconds = s == null ? 0 : s.totalDurationMs / 1000;
+                ((TextView) row.findViewById(R.id.item_details)).setText(
+                        getString(R.string.playlist_summary, count, DateUtils.formatElapsedTime(seconds)));
+                ImageView art = row.findViewById(R.id.item_art);
+                if (s != null && s.firstMediaId > 0) artworkLoader.bind(art, s.firstMediaId, s.firstDateModified);
+                else {
+                    artworkLoader.cancel(art);
+                    art.setImageDrawable(null);
+                }
+                return row;
+            }
+        };
         ListView lv = new ListView(this);
         lv.setAdapter(adapter);
 
@@ -797,8 +1049,7 @@ public class MainActivity extends AppCompatActivity {
                     .setTitle(selected.name)
                     .setItems(options, (dialog, which) -> {
                         if (which == 0) {
-                            List<PlaylistItemEntity> items = playlistItemDao.getItemsForPlaylist(selected.id);
-                            startQueuePlayback(toMediaItems(items), selected.name);
+                            playPlaylist(selected);
                         } else if (which == 1) {
                             showPlaylistDetailDialog(selected);
                         } else if (which == 2) {
@@ -818,12 +1069,13 @@ public class MainActivity extends AppCompatActivity {
                                             }
                                         }
                                         selected.name = newName;
-                                        int updated = playlistDao.update(selected);
-                                        if (updated > 0) {
-                                            names.set(position, newName);
-                                            adapter.notifyDataSetChanged();
-                                            Toast.makeText(this, getString(R.string.playlist_renamed), Toast.LENGTH_SHORT).show();
-                                        }
+                                        playlists.update(selected, lifetime, updated -> {
+                                            int i = pls.indexOf(selected);
+                                            if (updated > 0 && i >= 0) {
+                                                adapter.notifyDataSetChanged();
+                                                Toast.makeText(this, getString(R.string.playlist_renamed), Toast.LENGTH_SHORT).show();
+                                            }
+                                        });
                                     })
                                     .setNegativeButton(getString(R.string.cancel), null)
                                     .show();
@@ -832,11 +1084,13 @@ public class MainActivity extends AppCompatActivity {
                                     .setTitle(getString(R.string.delete_playlist))
                                     .setMessage(getString(R.string.confirm_delete_playlist, selected.name))
                                     .setPositiveButton(getString(R.string.delete), (d, w) -> {
-                                        playlistDao.delete(selected);
-                                        pls.remove(position);
-                                        names.remove(position);
-                                        adapter.notifyDataSetChanged();
-                                        Toast.makeText(this, getString(R.string.playlist_deleted), Toast.LENGTH_SHORT).show();
+                                        playlists.delete(selected, lifetime, deleted -> {
+                                            int i = pls.indexOf(selected);
+                                            if (i < 0) return;
+                                            pls.remove(i);
+                                            adapter.notifyDataSetChanged();
+                                            Toast.makeText(this, getString(R.string.playlist_deleted), Toast.LENGTH_SHORT).show();
+                                        });
                                     })
                                     .setNegativeButton(getString(R.string.cancel), null)
                                     .show();
@@ -864,22 +1118,65 @@ public class MainActivity extends AppCompatActivity {
                                     }
                                 }
                                 PlaylistEntity created = new PlaylistEntity(currentUserId, name, System.currentTimeMillis());
-                                created.id = (int) playlistDao.insert(created);
-                                pls.add(created);
-                                names.add(name);
-                                adapter.notifyDataSetChanged();
-                                Toast.makeText(this, getString(R.string.playlist_created), Toast.LENGTH_SHORT).show();
+                                playlists.create(created, lifetime, saved -> {
+                                    pls.add(created);
+                                    adapter.notifyDataSetChanged();
+                                    Toast.makeText(this, getString(R.string.playlist_created), Toast.LENGTH_SHORT).show();
+                                });
                             })
                             .setNegativeButton(getString(R.string.close), null)
                             .show();
                 })
+                .setNeutralButton(getString(R.string.search), (dialog, which) -> promptPlaylistSearch(pls))
                 .setNegativeButton(getString(R.string.close), null)
                 .show();
     }
+
+    // Full-text search across all of the user's playlists; `pls` names the playlists of the hits
+    private void promptPlaylistSearch(List<PlaylistEntity> pls) {
+        EditText input = new EditText(this);
+        input.setHint(getString(R.string.search_hint));
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.search_playlists))
+                .setView(input)
+                .setPositiveButton(getString(R.string.search), (d, w) -> {
+                    String text = input.getText().toString();
+                    playlists.search(currentUserId, text, lifetime, hits -> showPlaylistSearchResults(pls, hits));
+                })
+                .setNegativeButton(getString(R.string.cancel), null)
+                .show();
+    }
+
+    private void showPlaylistSearchResults(List<PlaylistEntity> pls, List<PlaylistItemDao.Match> hits) {
+        if (hits.isEmpty()) {
+            Toast.makeText(this, getString(R.string.no_matches), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Map<Integer, PlaylistEntity> byId = new HashMap<>();
+        for (PlaylistEntity p : pls) byId.put(p.id, p);
+        List<String> lines = new ArrayList<>();
+        for (PlaylistItemDao.Match m : hits) {
+            PlaylistEntity p = byId.get(m.playlistId);
+            lines.add(m.snippet + (p != null ? " — " + p.name : ""));
+        }
+        ListView lv = new ListView(this);
+        lv.setAdapter(new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, lines));
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.search_playlists))
+                .setView(lv)
+                .setNegativeButton(getString(R.string.close), null)
+                .show();
+        lv.setOnItemClickListener((parent, view, position, id) -> {
+            PlaylistEntity p = byId.get(hits.get(position).playlistId);
+            if (p == null) return;
+            dialog.dismiss();
+            showPlaylistDetailDialog(p);
+        });
+    }
     private void showPlaylistDetailDialog(String name, List<MediaItem> items) {
         final List<MediaItem> playlistItems = (items == null) ? new ArrayList<>() : items;
-        RemoveAdapter adapter = new RemoveAdapter(this, playlistItems);
-        ListView lv = new ListView(this);
+        RemoveAdapter adapter = new RemoveAdapter(playlistItems, false);
+        RecyclerView lv = newDialogList();
         lv.setAdapter(adapter);
 
 
@@ -893,96 +1190,164 @@ public class MainActivity extends AppCompatActivity {
     // open playlist details by entity, loading from DB and persisting removals
     private void showPlaylistDetailDialog(@NonNull PlaylistEntity playlist) {
         // Load items for this playlist
-        List<PlaylistItemEntity> rawItems = playlistItemDao.getItemsForPlaylist(playlist.id);
-        class PlaylistDetailAdapter extends ArrayAdapter<PlaylistItemEntity> {
+        playlists.itemsAfter(playlist.id, null, lifetime, firstPage -> showPlaylistDetailDialog(playlist, firstPage));
+    }
+
+    // Opens on the first page; later pages are fetched as the list scrolls near their end
+    private void showPlaylistDetailDialog(@NonNull PlaylistEntity playlist, @NonNull List<PlaylistItemEntity> firstPage) {
+        class PlaylistDetailAdapter extends RecyclerView.Adapter<PlaylistDetailAdapter.Holder> {
             private final List<PlaylistItemEntity> items;
-            PlaylistDetailAdapter(@NonNull android.content.Context ctx, @NonNull List<PlaylistItemEntity> items) {
-                super(ctx, 0, items);
+            private boolean loading;
+            private boolean complete;
+
+            class Holder extends RecyclerView.ViewHolder {
+                final TextView title;
+
+                Holder(View v) {
+                    super(v);
+                    title = v.findViewById(R.id.item_title);
+                    // Play item on row click
+                    v.setOnClickListener(row -> {
+                        int position = getBindingAdapterPosition();
+                        if (position == RecyclerView.NO_POSITION) return;
+                        PlaylistItemEntity pie = items.get(position);
+                        try {
+                            prepareMediaPlayer(Uri.parse(pie.contentUri), pie.title, pie.artist);
+                            if (playback != null) playback.play();
+                        } catch (Exception ignored) {}
+                    });
+                    // Remove item
+                    v.findViewById(R.id.btn_remove).setOnClickListener(click -> {
+                        int position = getBindingAdapterPosition();
+                        if (position == RecyclerView.NO_POSITION) return;
+                        PlaylistItemEntity pie = items.get(position);
+                        playlists.removeItem(pie, lifetime, deleted -> {
+                            int i = items.indexOf(pie);
+                            if (deleted > 0 && i >= 0) {
+                                items.remove(i);
+                                notifyItemRemoved(i);
+                                Toast.makeText(MainActivity.this, R.string.delete, Toast.LENGTH_SHORT).show();
+                            }
+                        });
+                    });
+                }
+            }
+
+            PlaylistDetailAdapter(@NonNull List<PlaylistItemEntity> items) {
                 this.items = items;
+                this.complete = items.size() < PlaylistRepository.PAGE_SIZE;
+                setHasStableIds(true);
             }
-            @NonNull
-            @Override
-            public View getView(int position, @Nullable View convertView, @NonNull android.view.ViewGroup parent) {
-                View v = convertView;
-                if (v == null) v = getLayoutInflater().inflate(R.layout.item_with_remove, parent, false);
-                PlaylistItemEntity pie = getItem(position);
-                TextView title = v.findViewById(R.id.item_title);
-                ImageButton btnRemove = v.findViewById(R.id.btn_remove);
-
-                String display = (pie == null) ? "" : (pie.artist != null && !pie.artist.isEmpty() ? pie.title + " — " + pie.artist : pie.title);
-                title.setText(display);
-
-                // Play item on row click
-                v.setOnClickListener(row -> {
-                    if (pie == null) return;
-                    playingFromQueue = false;
-                    queueIndex = -1;
-                    try {
-                        prepareMediaPlayer(Uri.parse(pie.contentUri));
-                        if (mediaPlayer != null) mediaPlayer.start();
-                        if (titleText != null) titleText.setText(pie.title);
-                    } catch (Exception ignored) {}
-                });
 
-                // Remove item
-                btnRemove.setOnClickListener(click -> {
-                    if (pie == null) return;
-                    int deleted = playlistItemDao.delete(pie);
-                    if (deleted > 0) {
-                        items.remove(position);
-                        notifyDataSetChanged();
-                        Toast.makeText(MainActivity.this, R.string.delete, Toast.LENGTH_SHORT).show();
-                    }
+            private void loadMore() {
+                if (loading || complete || items.isEmpty()) return;
+                loading = true;
+                playlists.itemsAfter(playlist.id, items.get(items.size() - 1), lifetime, page -> {
+                    loading = false;
+                    complete = page.size() < PlaylistRepository.PAGE_SIZE;
+                    int start = items.size();
+                    items.addAll(page);
+                    notifyItemRangeInserted(start, page.size());
                 });
+            }
 
-                return v;
+            @Override
+            public int getItemCount() {
+                return items.size();
+            }
+
+            @Override
+            public long getItemId(int position) {
+                return items.get(position).id;
+            }
+
+            @NonNull
+            @Override
+            public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+                return new Holder(getLayoutInflater().inflate(R.layout.item_with_remove, parent, false));
+            }
+
+            @Override
+            public void onBindViewHolder(@NonNull Holder h, int position) {
+                if (position >= items.size() - PlaylistRepository.PAGE_SIZE / 2) loadMore();
+                PlaylistItemEntity pie = items.get(position);
+                h.title.setText(pie.artist != null && !pie.artist.isEmpty() ? pie.title + " — " + pie.artist : pie.title);
             }
         }
 
-        PlaylistDetailAdapter adapter = new PlaylistDetailAdapter(this, new ArrayList<>(rawItems));
-        ListView lv = new ListView(this);
+        List<PlaylistItemEntity> current = new ArrayList<>(firstPage);
+        PlaylistDetailAdapter adapter = new PlaylistDetailAdapter(current);
+        RecyclerView lv = newDialogList();
         lv.setAdapter(adapter);
+        // Long-press and drag to reorder; the move is saved once the row is dropped, and only
+        // that row's position changes. It is placed after its new upper neighbour, since the
+        // item below it may not be loaded yet.
+        new ItemTouchHelper(new ItemTouchHelper.SimpleCallback(ItemTouchHelper.UP | ItemTouchHelper.DOWN, 0) {
+            private int dragFrom = RecyclerView.NO_POSITION;
+
+            @Override
+            public boolean onMove(@NonNull RecyclerView rv, @NonNull RecyclerView.ViewHolder vh, @NonNull RecyclerView.ViewHolder target) {
+                int from = vh.getBindingAdapterPosition();
+                int to = target.getBindingAdapterPosition();
+                if (from == RecyclerView.NO_POSITION || to == RecyclerView.NO_POSITION) return false;
+                if (dragFrom == RecyclerView.NO_POSITION) dragFrom = from;
+                current.add(to, current.remove(from));
+                adapter.notifyItemMoved(from, to);
+                return true;
+            }
+
+            @Override
+            public void onSwiped(@NonNull RecyclerView.ViewHolder vh, int direction) {
+            }
+
+            @Override
+            public void clearView(@NonNull RecyclerView rv, @NonNull RecyclerView.ViewHolder vh) {
+                super.clearView(rv, vh);
+                int to = vh.getBindingAdapterPosition();
+                if (dragFrom != RecyclerView.NO_POSITION && to != RecyclerView.NO_POSITION && to != dragFrom) {
+                    playlists.moveItem(current.get(to), to > 0 ? current.get(to - 1) : null, lifetime);
+                }
+                dragFrom = RecyclerView.NO_POSITION;
+            }
+        }).attachToRecyclerView(lv);
 
         new AlertDialog.Builder(this)
                 .setTitle(playlist.name)
                 .setView(lv)
-                .setNeutralButton(getString(R.string.play_whole_playlist), (d, w) -> {
-                    List<PlaylistItemEntity> current = new ArrayList<>();
-                    for (int i = 0; i < adapter.getCount(); i++) {
-                        PlaylistItemEntity it = adapter.getItem(i);
-                        if (it != null) current.add(it);
-                    }
-                    List<MediaItem> list = toMediaItems(current);
-                    startQueuePlayback(list, playlist.name);
-                })
+                .setNeutralButton(getString(R.string.play_whole_playlist), (d, w) -> playPlaylist(playlist))
                 .setPositiveButton(getString(R.string.close), null)
                 .show();
     }
 
     // Ask for READ permission if needed
     private void checkPermissionAndOpenLibrary() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            String perm = android.Manifest.permission.READ_MEDIA_AUDIO;
-            if (androidx.core.content.ContextCompat.checkSelfPermission(this, perm) == android.content.pm.PackageManager.PERMISSION_GRANTED) {
-                loadLibraryFromMediaStore();
-                openLibraryDialog();
-            } else {
-                permissionLauncher.launch(new String[]{perm});
-            }
+        if (hasAudioPermission()) {
+            libraryObserver.register();
+            loadLibraryFromMediaStore();
+            openLibraryDialog();
         } else {
-            String perm = android.Manifest.permission.READ_EXTERNAL_STORAGE;
-            if (androidx.core.content.ContextCompat.checkSelfPermission(this, perm) == android.content.pm.PackageManager.PERMISSION_GRANTED) {
-                loadLibraryFromMediaStore();
-                openLibraryDialog();
-            } else {
-                permissionLauncher.launch(new String[]{perm});
-            }
+            permissionLauncher.launch(new String[]{audioPermission()});
         }
     }
 
-    // Let user pick an existing playlist or create one, then add the item (persist)
-    private void showAddToPlaylistDialog(MediaItem item) {
-        List<PlaylistEntity> pls = playlistDao.getPlaylistsForUser(currentUserId);
+    private static String audioPermission() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? android.Manifest.permission.READ_MEDIA_AUDIO
+                : android.Manifest.permission.READ_EXTERNAL_STORAGE;
+    }
+
+    private boolean hasAudioPermission() {
+        return androidx.core.content.ContextCompat.checkSelfPermission(this, audioPermission()) == android.content.pm.PackageManager.PERMISSION_GRANTED;
+    }
+
+    // Let user pick an existing playlist or create one, then add the items (persist), all in
+    // one transaction
+    private void showAddToPlaylistDialog(List<MediaItem> items) {
+        if (items.isEmpty()) return;
+        playlists.playlistsFor(currentUserId, lifetime, pls -> showAddToPlaylistDialog(items, pls));
+    }
+
+    private void showAddToPlaylistDialog(List<MediaItem> items, List<PlaylistEntity> pls) {
         List<String> names = new ArrayList<>();
         names.add(getString(R.string.create_new_playlist_option));
         for (PlaylistEntity p : pls) names.add(p.name);
@@ -1014,17 +1379,15 @@ public class MainActivity extends AppCompatActivity {
                                     }
                                 }
                                 PlaylistEntity created = new PlaylistEntity(currentUserId, name, System.currentTimeMillis());
-                                created.id = (int) playlistDao.insert(created);
-                                insertPlaylistItem(created.id, item);
-                                Toast.makeText(this, getString(R.string.added_to, name), Toast.LENGTH_SHORT).show();
+                                playlists.createWith(created, newPlaylistItems(0, items), lifetime,
+                                        saved -> toastAdded(items.size(), name));
                             }
                         })
                         .setNegativeButton(getString(R.string.close), null)
                         .show();
             } else {
                 PlaylistEntity sel = pls.get(position - 1);
-                insertPlaylistItem(sel.id, item);
-                Toast.makeText(this, getString(R.string.added_to, sel.name), Toast.LENGTH_SHORT).show();
+                playlists.addItems(newPlaylistItems(sel.id, items), lifetime, saved -> toastAdded(saved.size(), sel.name));
             }
             dlg.dismiss();
         });
@@ -1032,16 +1395,25 @@ public class MainActivity extends AppCompatActivity {
         dlg.show();
     }
 
-    private void insertPlaylistItem(int playlistId, MediaItem item) {
-        PlaylistItemEntity pie = new PlaylistItemEntity(
-                playlistId,
-                item.contentUri.toString(),
-                item.title == null ? "Unknown" : item.title,
-                item.artist,
-                item.album,
-                System.currentTimeMillis()
-        );
-        playlistItemDao.insert(pie);
+    private static List<PlaylistItemEntity> newPlaylistItems(int playlistId, List<MediaItem> items) {
+        long now = System.currentTimeMillis();
+        List<PlaylistItemEntity> list = new ArrayList<>(items.size());
+        for (MediaItem item : items) {
+            list.add(new PlaylistItemEntity(
+                    playlistId,
+                    item.contentUri.toString(),
+                    item.title == null ? "Unknown" : item.title,
+                    item.artist,
+                    item.album,
+                    now
+            ));
+        }
+        return list;
+    }
+
+    private void toastAdded(int count, String playlistName) {
+        String msg = count == 1 ? getString(R.string.added_to, playlistName) : getString(R.string.added_n_to, count, playlistName);
+        Toast.makeText(this, msg, Toast.LENGTH_SHORT).show();
     }
 
     private String displayFor(@Nullable MediaItem m) {
@@ -1049,41 +1421,21 @@ public class MainActivity extends AppCompatActivity {
         return (m.artist != null && !m.artist.isEmpty()) ? (m.title + " — " + m.artist) : m.title;
     }
 
-    private boolean canSkipNext() {
-        return playingFromQueue && queueIndex >= 0 && (queueIndex + 1) < playQueue.size();
-    }
-
-    private boolean canSkipPrev() {
-        return playingFromQueue && queueIndex > 0 && queueIndex < playQueue.size();
-    }
-
     private void skipToNextInQueue() {
-        if (!canSkipNext()) return;
-        queueIndex++;
-        MediaItem next = playQueue.get(queueIndex);
-        prepareMediaPlayer(next.contentUri);
-        if (mediaPlayer != null) mediaPlayer.start();
-        if (titleText != null) titleText.setText(next.title);
+        if (playback == null || !playback.canSkipNext()) return;
+        playback.skipToNext();
         if (playPauseButton != null) playPauseButton.setImageResource(android.R.drawable.ic_media_pause);
     }
 
     private void skipToPreviousInQueue() {
-        if (!canSkipPrev()) return;
-        queueIndex--;
-        MediaItem prev = playQueue.get(queueIndex);
-        prepareMediaPlayer(prev.contentUri);
-        if (mediaPlayer != null) mediaPlayer.start();
-        if (titleText != null) titleText.setText(prev.title);
+        if (playback == null || !playback.canSkipPrev()) return;
+        playback.skipToPrevious();
         if (playPauseButton != null) playPauseButton.setImageResource(android.R.drawable.ic_media_pause);
     }
 
-    private List<MediaItem> toMediaItems(List<PlaylistItemEntity> items) {
-        List<MediaItem> list = new ArrayList<>();
-        long idx = 0;
-        for (PlaylistItemEntity e : items) {
-            Uri uri = Uri.parse(e.contentUri);
-            list.add(new MediaItem(idx++, e.title, e.artist, e.album, e.dateAdded, uri));
-        }
+    private static List<MediaItem> toMediaItems(LibraryStore.Snapshot snapshot) {
+        List<MediaItem> list = new ArrayList<>(snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) list.add(MediaStoreSync.toMediaItem(snapshot, i));
         return list;
     }
 }
@@ -0,0 +1,26 @@
+package com.example.mymediaplayer;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
+public class MyMediaPlayerApp extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Debug builds log any disk or database access on the main thread; all of it is meant
+        // to go through TaskScheduler
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                    .detectLeakedSqlLiteObjects()
+                    .detectLeakedClosableObjects()
+                    .penaltyLog()
+                    .build());
+        }
+    }
+}
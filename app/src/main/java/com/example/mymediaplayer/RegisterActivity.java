@@ -11,22 +11,24 @@ import android.widget.Toast;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.mymediaplayer.data.AppDatabase;
 import com.example.mymediaplayer.data.PasswordUtil;
 import com.example.mymediaplayer.data.SessionManager;
-import com.example.mymediaplayer.data.UserDao;
 import com.example.mymediaplayer.data.UserEntity;
+import com.example.mymediaplayer.data.UserRepository;
+import com.example.mymediaplayer.task.CancellationToken;
 
 public class RegisterActivity extends AppCompatActivity {
     private SessionManager session;
-    private UserDao userDao;
+    private UserRepository users;
+    // Cancelled in onDestroy so a slow sign-up doesn't land on a dead activity
+    private final CancellationToken lifetime = new CancellationToken();
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_register);
         session = new SessionManager(this);
-        userDao = AppDatabase.getInstance(this).userDao();
+        users = new UserRepository(this);
 
         EditText etUsername = findViewById(R.id.et_username);
         EditText etPassword = findViewById(R.id.et_password);
@@ -46,24 +48,36 @@ public class RegisterActivity extends AppCompatActivity {
                 Toast.makeText(this, R.string.passwords_no_match, Toast.LENGTH_SHORT).show();
                 return;
             }
-            if (userDao.findByUsername(u) != null) {
-                Toast.makeText(this, R.string.username_taken, Toast.LENGTH_SHORT).show();
-                return;
-            }
             String salt = PasswordUtil.generateSaltHex();
             String hash = PasswordUtil.hashPassword(p, salt);
             long now = System.currentTimeMillis();
             UserEntity user = new UserEntity(u, hash, salt, now);
-            int newId = (int) userDao.insert(user);
-            session.login(newId, u);
-            Toast.makeText(this, R.string.registered_successfully, Toast.LENGTH_SHORT).show();
-            Intent i = new Intent(this, MainActivity.class);
-            i.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            startActivity(i);
-            finish();
+            btnRegister.setEnabled(false);
+            users.register(user, lifetime, newId -> {
+                btnRegister.setEnabled(true);
+                if (newId == null) {
+                    Toast.makeText(this, R.string.username_taken, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                session.login(newId, u);
+                Toast.makeText(this, R.string.registered_successfully, Toast.LENGTH_SHORT).show();
+                Intent i = new Intent(this, MainActivity.class);
+                i.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                startActivity(i);
+                finish();
+            }, e -> {
+                btnRegister.setEnabled(true);
+                Toast.makeText(this, "Registration failed", Toast.LENGTH_SHORT).show();
+            });
         });
 
         linkLogin.setOnClickListener(v -> finish());
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        lifetime.cancel();
+    }
 }
 
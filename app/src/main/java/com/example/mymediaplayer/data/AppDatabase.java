@@ -2,25 +2,94 @@ package com.example.mymediaplayer.data;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {UserEntity.class, PlaylistEntity.class, PlaylistItemEntity.class}, version = 1)
+@Database(entities = {UserEntity.class, PlaylistEntity.class, PlaylistItemEntity.class, LibraryTrackEntity.class,
+        TrackMetadataEntity.class, PlaylistItemFts.class}, version = 6)
 public abstract class AppDatabase extends RoomDatabase {
     private static volatile AppDatabase INSTANCE;
 
     public abstract UserDao userDao();
     public abstract PlaylistDao playlistDao();
     public abstract PlaylistItemDao playlistItemDao();
+    public abstract LibraryTrackDao libraryTrackDao();
+    public abstract TrackMetadataDao trackMetadataDao();
+
+    // Adds the MediaStore library cache
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `library_tracks` (`mediaId` INTEGER NOT NULL, `title` TEXT NOT NULL, "
+                    + "`artist` TEXT, `album` TEXT, `dateAdded` INTEGER NOT NULL, `dateModified` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`mediaId`))");
+        }
+    };
+
+    // Adds the extended track metadata cache
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `track_metadata` (`mediaId` INTEGER NOT NULL, `dateModified` INTEGER NOT NULL, "
+                    + "`durationMs` INTEGER NOT NULL, `bitrate` INTEGER NOT NULL, `trackNumber` INTEGER NOT NULL, "
+                    + "`year` INTEGER NOT NULL, `mimeType` TEXT, PRIMARY KEY(`mediaId`))");
+        }
+    };
+
+    // Adds the full-text index over playlist items, with the triggers Room uses to keep an
+    // external-content FTS table in sync, and indexes the items already there
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `playlist_items_fts` USING FTS4(`title` TEXT NOT NULL, "
+                    + "`artist` TEXT, `album` TEXT, tokenize=unicode61, content=`playlist_items`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlist_items_fts_BEFORE_UPDATE BEFORE UPDATE ON `playlist_items` "
+                    + "BEGIN DELETE FROM `playlist_items_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlist_items_fts_BEFORE_DELETE BEFORE DELETE ON `playlist_items` "
+                    + "BEGIN DELETE FROM `playlist_items_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlist_items_fts_AFTER_UPDATE AFTER UPDATE ON `playlist_items` "
+                    + "BEGIN INSERT INTO `playlist_items_fts`(`docid`, `title`, `artist`, `album`) "
+                    + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`artist`, NEW.`album`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_playlist_items_fts_AFTER_INSERT AFTER INSERT ON `playlist_items` "
+                    + "BEGIN INSERT INTO `playlist_items_fts`(`docid`, `title`, `artist`, `album`) "
+                    + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`artist`, NEW.`album`); END");
+            db.execSQL("INSERT INTO `playlist_items_fts`(`playlist_items_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    // Adds the position sort key to playlist items, spacing existing items out in their
+    // current (insertion) order, and indexes it per playlist
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `playlist_items` ADD COLUMN `position` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE `playlist_items` SET `position` = `id` * " + PlaylistPositions.GAP);
+            db.execSQL("DROP INDEX IF EXISTS `index_playlist_items_playlistId`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_playlist_items_playlistId_position` ON `playlist_items` (`playlistId`, `position`)");
+        }
+    };
+
+    // Adds MediaStore's album id to the library cache. The cached rows are dropped rather than
+    // left with no album id, which makes the next sync a full scan that fills it in.
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `library_tracks` ADD COLUMN `albumId` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("DELETE FROM `library_tracks`");
+        }
+    };
 
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class, "mmp.db")
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6)
                             .fallbackToDestructiveMigration()
-                            .allowMainThreadQueries() // simplify for now
                             .build();
                 }
             }
@@ -28,4 +97,3 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 }
-
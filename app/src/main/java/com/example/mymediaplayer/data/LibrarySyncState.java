@@ -0,0 +1,43 @@
+package com.example.mymediaplayer.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Map;
+
+// Where the last MediaStore sync left off
+public class LibrarySyncState {
+    private final SharedPreferences prefs;
+
+    public LibrarySyncState(Context ctx) {
+        this.prefs = ctx.getSharedPreferences("library_sync", Context.MODE_PRIVATE);
+    }
+
+    public String getMediaStoreVersion() {
+        return prefs.getString("mediaStoreVersion", null);
+    }
+
+    // MediaStore generation per volume (API 30+)
+    public long getGeneration(String volume) {
+        return prefs.getLong("generation_" + volume, -1);
+    }
+
+    // Wall clock of the last sync in seconds, for DATE_MODIFIED comparisons before API 30
+    public long getLastSyncSeconds() {
+        return prefs.getLong("lastSyncSeconds", -1);
+    }
+
+    public void save(String mediaStoreVersion, long lastSyncSeconds, Map<String, Long> generations) {
+        SharedPreferences.Editor e = prefs.edit()
+                .putString("mediaStoreVersion", mediaStoreVersion)
+                .putLong("lastSyncSeconds", lastSyncSeconds);
+        for (Map.Entry<String, Long> g : generations.entrySet()) {
+            e.putLong("generation_" + g.getKey(), g.getValue());
+        }
+        e.apply();
+    }
+
+    public void clear() {
+        prefs.edit().clear().apply();
+    }
+}
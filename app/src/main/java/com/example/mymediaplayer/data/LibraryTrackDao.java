@@ -0,0 +1,47 @@
+package com.example.mymediaplayer.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public interface LibraryTrackDao {
+    // Keeps IN (...) lists under SQLite's bound-parameter limit
+    int MAX_IDS_PER_QUERY = 500;
+
+    @Query("SELECT * FROM library_tracks")
+    List<LibraryTrackEntity> getAll();
+
+    // Keyset page in mediaId order, for loading the cache in chunks
+    @Query("SELECT * FROM library_tracks WHERE mediaId > :afterId ORDER BY mediaId LIMIT :limit")
+    List<LibraryTrackEntity> getPage(long afterId, int limit);
+
+    @Query("SELECT mediaId FROM library_tracks")
+    List<Long> getAllIds();
+
+    @Query("SELECT COUNT(*) FROM library_tracks")
+    int count();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<LibraryTrackEntity> tracks);
+
+    @Query("DELETE FROM library_tracks WHERE mediaId IN (:ids)")
+    int deleteByIds(List<Long> ids);
+
+    @Query("DELETE FROM library_tracks")
+    int deleteAll();
+
+    // Applies one sync pass atomically
+    @Transaction
+    default void applyDelta(List<LibraryTrackEntity> upserted, List<Long> removedIds, boolean replaceAll) {
+        if (replaceAll) deleteAll();
+        for (int i = 0; i < removedIds.size(); i += MAX_IDS_PER_QUERY) {
+            deleteByIds(removedIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, removedIds.size())));
+        }
+        if (!upserted.isEmpty()) upsertAll(upserted);
+    }
+}
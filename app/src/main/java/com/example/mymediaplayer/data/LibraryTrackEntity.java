@@ -0,0 +1,41 @@
+package com.example.mymediaplayer.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Local copy of a MediaStore audio row, so the library is available before MediaStore is queried
+@Entity(tableName = "library_tracks")
+public class LibraryTrackEntity {
+    // MediaStore.Audio.Media._ID
+    @PrimaryKey
+    public long mediaId;
+
+    @NonNull
+    public String title;
+
+    public String artist;
+
+    public String album;
+
+    // MediaStore.Audio.Media.ALBUM_ID; tells apart albums that share a name, such as two
+    // artists' "Greatest Hits". 0 if unknown.
+    @ColumnInfo(defaultValue = "0")
+    public long albumId;
+
+    // Seconds, as reported by MediaStore
+    public long dateAdded;
+
+    public long dateModified;
+
+    public LibraryTrackEntity(long mediaId, @NonNull String title, String artist, String album, long albumId, long dateAdded, long dateModified) {
+        this.mediaId = mediaId;
+        this.title = title;
+        this.artist = artist;
+        this.album = album;
+        this.albumId = albumId;
+        this.dateAdded = dateAdded;
+        this.dateModified = dateModified;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.mymediaplayer.data;
 
 import androidx.room.Dao;
 import androidx.room.Delete;
+import androidx.room.Embedded;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
@@ -11,9 +12,42 @@ import java.util.List;
 
 @Dao
 public interface PlaylistDao {
+
+    // A playlist with totals over its items. Durations come from the track metadata cache, so
+    // tracks it hasn't reached yet count as 0. firstMediaId is the MediaStore id of the first
+    // track (for artwork), 0 if there is none or it isn't a MediaStore track, and
+    // firstDateModified its library_tracks.dateModified (0 if not in the library).
+    class Summary {
+        @Embedded
+        public PlaylistEntity playlist;
+        public int itemCount;
+        public long totalDurationMs;
+        // Newest of the playlist's creation and its items' additions
+        public long lastModified;
+        public long firstMediaId;
+        public long firstDateModified;
+    }
+
     @Query("SELECT * FROM playlists WHERE userId = :userId ORDER BY name ASC")
     List<PlaylistEntity> getPlaylistsForUser(int userId);
 
+    // Every playlist of the user with its Summary in one grouped query. `uriPrefix` is the
+    // MediaStore audio uri plus '/', which playlist item uris are that track's id appended to;
+    // the id after it is looked up in track_metadata by primary key.
+    @Query("SELECT s.*, COALESCE(t.dateModified, 0) AS firstDateModified FROM ("
+            + "SELECT p.*, COUNT(i.id) AS itemCount, COALESCE(SUM(m.durationMs), 0) AS totalDurationMs, "
+            + "MAX(p.createdAt, COALESCE(MAX(i.dateAdded), 0)) AS lastModified, "
+            + "COALESCE((SELECT CAST(substr(f.contentUri, length(:uriPrefix) + 1) AS INTEGER) FROM playlist_items f "
+            + "WHERE f.playlistId = p.id AND f.contentUri LIKE :uriPrefix || '%' "
+            + "ORDER BY f.position ASC, f.id ASC LIMIT 1), 0) AS firstMediaId "
+            + "FROM playlists p "
+            + "LEFT JOIN playlist_items i ON i.playlistId = p.id "
+            + "LEFT JOIN track_metadata m ON i.contentUri LIKE :uriPrefix || '%' "
+            + "AND m.mediaId = CAST(substr(i.contentUri, length(:uriPrefix) + 1) AS INTEGER) "
+            + "WHERE p.userId = :userId GROUP BY p.id) s "
+            + "LEFT JOIN library_tracks t ON t.mediaId = s.firstMediaId ORDER BY s.name ASC")
+    List<Summary> getSummariesForUser(int userId, String uriPrefix);
+
     @Query("SELECT * FROM playlists WHERE id = :playlistId LIMIT 1")
     PlaylistEntity getById(int playlistId);
 
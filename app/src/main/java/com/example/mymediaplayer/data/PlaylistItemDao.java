@@ -2,20 +2,179 @@ package com.example.mymediaplayer.data;
 
 import androidx.room.Dao;
 import androidx.room.Delete;
+import androidx.room.Ignore;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Dao
 public interface PlaylistItemDao {
-    @Query("SELECT * FROM playlist_items WHERE playlistId = :playlistId ORDER BY id ASC")
+
+    // One full-text hit: the item and its playlist, the matching text with hits in [brackets], and
+    // matchinfo 'pcx' for ranking (see PlaylistSearch)
+    class Match {
+        public int id;
+        public int playlistId;
+        public String snippet;
+        public byte[] matchInfo;
+        @Ignore
+        public double rank;
+    }
+
+    class Slot {
+        public int id;
+        public long position;
+    }
+
+    @Query("SELECT * FROM playlist_items WHERE playlistId = :playlistId ORDER BY position ASC, id ASC")
     List<PlaylistItemEntity> getItemsForPlaylist(int playlistId);
 
+    // Keyset page: up to `limit` items after (afterPosition, afterId) in playlist order. It seeks
+    // straight to the cursor through the (playlistId, position) index, so a page deep into a
+    // huge playlist costs the same as the first one. Start with Long.MIN_VALUE, 0.
+    @Query("SELECT * FROM playlist_items WHERE playlistId = :playlistId AND position >= :afterPosition "
+            + "AND (position > :afterPosition OR id > :afterId) ORDER BY position ASC, id ASC LIMIT :limit")
+    List<PlaylistItemEntity> getPageAfter(int playlistId, long afterPosition, int afterId, int limit);
+
+    @Query("SELECT id, position FROM playlist_items WHERE playlistId = :playlistId ORDER BY position ASC, id ASC")
+    List<Slot> getSlots(int playlistId);
+
+    // Null if the item is gone
+    @Query("SELECT position FROM playlist_items WHERE id = :id")
+    Long positionOf(int id);
+
+    @Query("SELECT MAX(position) FROM playlist_items WHERE playlistId = :playlistId")
+    Long lastPosition(int playlistId);
+
+    @Query("SELECT MAX(position) FROM playlist_items WHERE playlistId = :playlistId AND position < :position")
+    Long positionBefore(int playlistId, long position);
+
+    @Query("SELECT MIN(position) FROM playlist_items WHERE playlistId = :playlistId AND position > :position")
+    Long positionAfter(int playlistId, long position);
+
+    @Query("SELECT MIN(position) FROM playlist_items WHERE playlistId = :playlistId")
+    Long firstPosition(int playlistId);
+
+    @Query("UPDATE playlist_items SET position = :position WHERE id = :id")
+    int setPosition(int id, long position);
+
+    // `match` is an FTS4 MATCH expression; build it with PlaylistSearch.matchQuery. At most
+    // `limit` hits, in index order rather than ranked, since FTS4 has no rank to sort on here
+    @Query("SELECT i.id AS id, i.playlistId AS playlistId, "
+            + "snippet(playlist_items_fts, '[', ']', '…', -1, 10) AS snippet, "
+            + "matchinfo(playlist_items_fts, 'pcx') AS matchInfo "
+            + "FROM playlist_items_fts "
+            + "JOIN playlist_items i ON i.id = playlist_items_fts.rowid "
+            + "JOIN playlists p ON p.id = i.playlistId "
+            + "WHERE playlist_items_fts MATCH :match AND p.userId = :userId LIMIT :limit")
+    List<Match> search(int userId, String match, int limit);
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     long insert(PlaylistItemEntity item);
 
+    // All rows in one transaction, so one journal commit however many there are
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long[] insertAll(List<PlaylistItemEntity> items);
+
+    // Adds `items` after everything already in their playlists, in list order
+    @Transaction
+    default long[] append(List<PlaylistItemEntity> items) {
+        Map<Integer, Long> last = new HashMap<>();
+        for (PlaylistItemEntity item : items) {
+            Long lo = last.containsKey(item.playlistId) ? last.get(item.playlistId) : lastPosition(item.playlistId);
+            item.position = PlaylistPositions.between(lo, null);
+            last.put(item.playlistId, item.position);
+        }
+        return insertAll(items);
+    }
+
+    // Adds `item` just before item `beforeId` of its playlist, or at the end for 0
+    @Transaction
+    default long insertAt(PlaylistItemEntity item, int beforeId) {
+        item.position = freePositionBefore(item.playlistId, beforeId);
+        return insert(item);
+    }
+
+    // Moves item `id` to just before item `beforeId`, or to the end for 0. Only the moved row
+    // changes unless its new gap is used up.
+    @Transaction
+    default void move(int playlistId, int id, int beforeId) {
+        if (id == beforeId) return;
+        setPosition(id, freePositionBefore(playlistId, beforeId));
+    }
+
+    // Moves item `id` to just after item `afterId`, or to the start for 0, and returns its new
+    // position. For lists that are only partly loaded, where the next item may not be known.
+    @Transaction
+    default long moveAfter(int playlistId, int id, int afterId) {
+        long key = freePositionAfter(playlistId, afterId);
+        setPosition(id, key);
+        return key;
+    }
+
+    // Puts the playlist in the order of `ids`; items left out keep their order after those
+    // listed. Rows that are already in order relative to each other are not written.
+    @Transaction
+    default void reorder(int playlistId, List<Integer> ids) {
+        Map<Integer, Long> positions = new HashMap<>();
+        List<Slot> slots = getSlots(playlistId);
+        for (Slot s : slots) positions.put(s.id, s.position);
+        List<Integer> order = new ArrayList<>(slots.size());
+        Set<Integer> listed = new HashSet<>();
+        for (Integer id : ids) {
+            if (positions.containsKey(id) && listed.add(id)) order.add(id);
+        }
+        for (Slot s : slots) {
+            if (listed.add(s.id)) order.add(s.id);
+        }
+        long[] current = new long[order.size()];
+        for (int i = 0; i < current.length; i++) current[i] = positions.get(order.get(i));
+        long[] keys = PlaylistPositions.reorder(current);
+        for (int i = 0; i < current.length; i++) {
+            long key = keys != null ? keys[i] : (i + 1) * PlaylistPositions.GAP;
+            if (key != current[i]) setPosition(order.get(i), key);
+        }
+    }
+
+    // Spaces the playlist's keys GAP apart again, keeping the order
+    @Transaction
+    default void renumber(int playlistId) {
+        List<Slot> slots = getSlots(playlistId);
+        for (int i = 0; i < slots.size(); i++) {
+            long key = (i + 1) * PlaylistPositions.GAP;
+            if (slots.get(i).position != key) setPosition(slots.get(i).id, key);
+        }
+    }
+
+    // Call inside a transaction
+    default long freePositionAfter(int playlistId, int afterId) {
+        Long lo = afterId == 0 ? null : positionOf(afterId);
+        long key = PlaylistPositions.between(lo, lo == null ? firstPosition(playlistId) : positionAfter(playlistId, lo));
+        if (key != PlaylistPositions.NONE) return key;
+        renumber(playlistId);
+        lo = positionOf(afterId);
+        return PlaylistPositions.between(lo, positionAfter(playlistId, lo));
+    }
+
+    // Call inside a transaction
+    default long freePositionBefore(int playlistId, int beforeId) {
+        Long hi = beforeId == 0 ? null : positionOf(beforeId);
+        if (hi == null) return PlaylistPositions.between(lastPosition(playlistId), null);
+        long key = PlaylistPositions.between(positionBefore(playlistId, hi), hi);
+        if (key != PlaylistPositions.NONE) return key;
+        renumber(playlistId);
+        hi = positionOf(beforeId);
+        return PlaylistPositions.between(positionBefore(playlistId, hi), hi);
+    }
+
     @Delete
     int delete(PlaylistItemEntity item);
 
@@ -1,6 +1,7 @@
 package com.example.mymediaplayer.data;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -14,7 +15,7 @@ import androidx.room.PrimaryKey;
                 childColumns = "playlistId",
                 onDelete = ForeignKey.CASCADE
         ),
-        indices = {@Index("playlistId")}
+        indices = {@Index(value = {"playlistId", "position"})}
 )
 public class PlaylistItemEntity {
     @PrimaryKey(autoGenerate = true)
@@ -35,6 +36,10 @@ public class PlaylistItemEntity {
 
     public long dateAdded;
 
+    // Sort key within the playlist; see PlaylistPositions
+    @ColumnInfo(defaultValue = "0")
+    public long position;
+
     public PlaylistItemEntity(int playlistId, @NonNull String contentUri, @NonNull String title, String artist, String album, long dateAdded) {
         this.playlistId = playlistId;
         this.contentUri = contentUri;
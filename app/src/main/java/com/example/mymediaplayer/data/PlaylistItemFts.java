@@ -0,0 +1,25 @@
+package com.example.mymediaplayer.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+// Full-text index over playlist item title, artist and album. The text stays in playlist_items;
+// Room keeps this table in step with it through triggers, and its rowid is the item id.
+@Fts4(contentEntity = PlaylistItemEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "playlist_items_fts")
+public class PlaylistItemFts {
+    @NonNull
+    public String title;
+
+    public String artist;
+
+    public String album;
+
+    public PlaylistItemFts(@NonNull String title, String artist, String album) {
+        this.title = title;
+        this.artist = artist;
+        this.album = album;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.mymediaplayer.data;
+
+import androidx.annotation.Nullable;
+
+// Sort keys for playlist_items.position. Items are numbered GAP apart, so an item can be moved
+// or inserted between two others by giving it a key in the gap, touching only that row. Each
+// move into the same gap halves it; when one runs out the playlist is renumbered.
+final class PlaylistPositions {
+    static final long GAP = 1L << 20;
+    // No free key; renumber first
+    static final long NONE = Long.MIN_VALUE;
+
+    private PlaylistPositions() {
+    }
+
+    // A key strictly between `lo` and `hi`; either may be null for the start or end of the list
+    static long between(@Nullable Long lo, @Nullable Long hi) {
+        if (lo == null && hi == null) return GAP;
+        if (hi == null) return lo + GAP;
+        if (lo == null) return hi - GAP;
+        return hi - lo >= 2 ? lo + (hi - lo) / 2 : NONE;
+    }
+
+    // New keys for items whose current keys, listed in their new order, are `current`. The
+    // longest run already in increasing order keeps its keys and the rest get keys in the gaps
+    // around it, so only rows that really moved change. Null if some gap is too small.
+    @Nullable
+    static long[] reorder(long[] current) {
+        int n = current.length;
+        boolean[] keep = longestIncreasing(current);
+        long[] out = current.clone();
+        int i = 0;
+        while (i < n) {
+            if (keep[i]) {
+                i++;
+                continue;
+            }
+            int j = i;
+            while (j < n && !keep[j]) j++;
+            int k = j - i;
+            long lo;
+            long hi;
+            if (i == 0 && j == n) {
+                lo = 0;
+                hi = (k + 1) * GAP;
+            } else if (i == 0) {
+                hi = current[j];
+                lo = hi - (k + 1) * GAP;
+            } else if (j == n) {
+                lo = out[i - 1];
+                hi = lo + (k + 1) * GAP;
+            } else {
+                lo = out[i - 1];
+                hi = current[j];
+            }
+            long step = (hi - lo) / (k + 1);
+            if (step < 1) return null;
+            for (int t = 0; t < k; t++) out[i + t] = lo + step * (t + 1);
+            i = j;
+        }
+        return out;
+    }
+
+    // Members of one longest strictly increasing subsequence (patience sorting)
+    private static boolean[] longestIncreasing(long[] a) {
+        int n = a.length;
+        // tails[k]: index of the smallest value ending an increasing run of length k + 1
+        int[] tails = new int[n];
+        int[] prev = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (a[tails[mid]] < a[i]) lo = mid + 1;
+                else hi = mid;
+            }
+            prev[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) length++;
+        }
+        boolean[] keep = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = prev[i]) keep[i] = true;
+        return keep;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.mymediaplayer.data;
+
+import android.content.Context;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mymediaplayer.task.CancellationToken;
+import com.example.mymediaplayer.task.TaskScheduler;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// A user's playlists and their items, read and written on the database pool. Results arrive
+// on the main thread, and not at all once `token` is cancelled. Everything runs in one serial
+// lane, so a page requested after a move or removal is read after it.
+public class PlaylistRepository {
+    public static final int PAGE_SIZE = 100;
+
+    private final AppDatabase db;
+    private final PlaylistDao playlistDao;
+    private final PlaylistItemDao itemDao;
+    private final TaskScheduler tasks = TaskScheduler.getInstance();
+    private final Executor lane = tasks.serial(tasks.db());
+
+    public PlaylistRepository(@NonNull Context context) {
+        this.db = AppDatabase.getInstance(context);
+        this.playlistDao = db.playlistDao();
+        this.itemDao = db.playlistItemDao();
+    }
+
+    // Playlists with their item counts, durations and first tracks, in one query however many
+    // items they hold
+    public void summariesFor(int userId, @NonNull CancellationToken token,
+                             @NonNull TaskScheduler.Callback<List<PlaylistDao.Summary>> onResult) {
+        String uriPrefix = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI + "/";
+        tasks.submit(lane, token, t -> playlistDao.getSummariesForUser(userId, uriPrefix), onResult);
+    }
+
+    public void playlistsFor(int userId, @NonNull CancellationToken token,
+                             @NonNull TaskScheduler.Callback<List<PlaylistEntity>> onResult) {
+        tasks.submit(lane, token, t -> playlistDao.getPlaylistsForUser(userId), onResult);
+    }
+
+    // The next PAGE_SIZE items after `after` (null for the first page), in playlist order; fewer
+    // at the end. The cursor is re-read by id, since moves and renumbering change positions.
+    public void itemsAfter(int playlistId, @Nullable PlaylistItemEntity after, @NonNull CancellationToken token,
+                           @NonNull TaskScheduler.Callback<List<PlaylistItemEntity>> onResult) {
+        tasks.submit(lane, token, t -> {
+            if (after == null) return itemDao.getPageAfter(playlistId, Long.MIN_VALUE, 0, PAGE_SIZE);
+            Long position = itemDao.positionOf(after.id);
+            return itemDao.getPageAfter(playlistId, position != null ? position : after.position, after.id, PAGE_SIZE);
+        }, onResult);
+    }
+
+    // Sets playlist.id before the callback runs
+    public void create(@NonNull PlaylistEntity playlist, @NonNull CancellationToken token,
+                       @Nullable TaskScheduler.Callback<PlaylistEntity> onResult) {
+        tasks.submit(lane, token, t -> {
+            playlist.id = (int) playlistDao.insert(playlist);
+            return playlist;
+        }, onResult);
+    }
+
+    // Creates `playlist` and puts `items` in it, all in one transaction
+    public void createWith(@NonNull PlaylistEntity playlist, @NonNull List<PlaylistItemEntity> items,
+                           @NonNull CancellationToken token, @Nullable TaskScheduler.Callback<PlaylistEntity> onResult) {
+        tasks.submit(lane, token, t -> db.runInTransaction(() -> {
+            playlist.id = (int) playlistDao.insert(playlist);
+            for (PlaylistItemEntity item : items) item.playlistId = playlist.id;
+            setIds(items, itemDao.append(items));
+            return playlist;
+        }), onResult);
+    }
+
+    // Rows changed: 0 if the playlist is gone
+    public void update(@NonNull PlaylistEntity playlist, @NonNull CancellationToken token,
+                       @Nullable TaskScheduler.Callback<Integer> onResult) {
+        tasks.submit(lane, token, t -> playlistDao.update(playlist), onResult);
+    }
+
+    // Items go with it (ON DELETE CASCADE)
+    public void delete(@NonNull PlaylistEntity playlist, @NonNull CancellationToken token,
+                       @Nullable TaskScheduler.Callback<Integer> onResult) {
+        tasks.submit(lane, token, t -> playlistDao.delete(playlist), onResult);
+    }
+
+    // Adds `items` to the end of their playlist in one transaction rather than one per row;
+    // sets their ids
+    public void addItems(@NonNull List<PlaylistItemEntity> items, @NonNull CancellationToken token,
+                         @Nullable TaskScheduler.Callback<List<PlaylistItemEntity>> onResult) {
+        tasks.submit(lane, token, t -> {
+            setIds(items, itemDao.append(items));
+            return items;
+        }, onResult);
+    }
+
+    // Moves `item` to just after `after`, or to the start for null; updates item.position
+    public void moveItem(@NonNull PlaylistItemEntity item, @Nullable PlaylistItemEntity after, @NonNull CancellationToken token) {
+        tasks.submit(lane, token, t -> {
+            item.position = itemDao.moveAfter(item.playlistId, item.id, after == null ? 0 : after.id);
+            return null;
+        }, null);
+    }
+
+    public void removeItem(@NonNull PlaylistItemEntity item, @NonNull CancellationToken token,
+                           @Nullable TaskScheduler.Callback<Integer> onResult) {
+        tasks.submit(lane, token, t -> itemDao.delete(item), onResult);
+    }
+
+    private static void setIds(List<PlaylistItemEntity> items, long[] rowIds) {
+        for (int i = 0; i < rowIds.length; i++) items.get(i).id = (int) rowIds[i];
+    }
+
+    // Full-text search over all of the user's playlists; see PlaylistSearch
+    public void search(int userId, @NonNull String text, @NonNull CancellationToken token,
+                       @NonNull TaskScheduler.Callback<List<PlaylistItemDao.Match>> onResult) {
+        tasks.submit(lane, token, t -> PlaylistSearch.search(itemDao, userId, text), onResult);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.mymediaplayer.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+// Ranked full-text search across all of a user's playlists. Matching happens in SQLite against
+// playlist_items_fts, so only the hits (ids, snippets and match statistics) are loaded.
+public final class PlaylistSearch {
+    public static final int LIMIT = 50;
+    // Hits loaded and ranked per search. Bounds the snippets built and rows read for a term as
+    // common as "the"; past it, the best LIMIT are picked from the first CANDIDATES in the index.
+    static final int CANDIDATES = 1000;
+
+    // Per column of playlist_items_fts: title, artist, album
+    private static final double[] WEIGHTS = {1.0, 0.75, 0.5};
+
+    private PlaylistSearch() {
+    }
+
+    // Best matches first; empty if the text has nothing searchable in it
+    @WorkerThread
+    @NonNull
+    public static List<PlaylistItemDao.Match> search(@NonNull PlaylistItemDao dao, int userId, @NonNull String text) {
+        String match = matchQuery(text);
+        if (match == null) return new ArrayList<>();
+        List<PlaylistItemDao.Match> hits = dao.search(userId, match, CANDIDATES);
+        for (PlaylistItemDao.Match m : hits) m.rank = rank(m.matchInfo);
+        Collections.sort(hits, (a, b) -> Double.compare(b.rank, a.rank));
+        return hits.size() > LIMIT ? new ArrayList<>(hits.subList(0, LIMIT)) : hits;
+    }
+
+    // Every word of the user's text as a prefix term, all required. Words are reduced to letters
+    // and digits and lowercased, so nothing typed can be read as FTS syntax (quotes, '-', OR, NEAR).
+    @Nullable
+    static String matchQuery(@NonNull String text) {
+        StringBuilder out = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (out.length() > 0) out.append(' ');
+            out.append(word).append('*');
+        }
+        return out.length() == 0 ? null : out.toString();
+    }
+
+    // matchinfo 'pcx' is phrase count, column count, then per phrase and column: hits in this
+    // row, hits in all rows, rows with a hit. A hit counts for more when the term is rare
+    // across all playlist items and when it is in the title.
+    static double rank(@Nullable byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 8) return 0;
+        ByteBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns; c++) {
+                int at = 8 + 12 * (p * columns + c);
+                if (at + 8 > matchInfo.length) return score;
+                int hitsHere = info.getInt(at);
+                int hitsAll = info.getInt(at + 4);
+                if (hitsHere > 0) score += (c < WEIGHTS.length ? WEIGHTS[c] : 0.5) * hitsHere / hitsAll;
+            }
+        }
+        return score;
+    }
+}
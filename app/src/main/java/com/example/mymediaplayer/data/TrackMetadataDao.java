@@ -0,0 +1,33 @@
+package com.example.mymediaplayer.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface TrackMetadataDao {
+
+    // A library track whose metadata is missing or was extracted from an older version of the file
+    class StaleTrack {
+        public long mediaId;
+        public long dateModified;
+    }
+
+    @Query("SELECT * FROM track_metadata")
+    List<TrackMetadataEntity> getAll();
+
+    @Query("SELECT t.mediaId AS mediaId, t.dateModified AS dateModified FROM library_tracks t "
+            + "LEFT JOIN track_metadata m ON m.mediaId = t.mediaId "
+            + "WHERE m.mediaId IS NULL OR m.dateModified != t.dateModified ORDER BY t.mediaId")
+    List<StaleTrack> getStale();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<TrackMetadataEntity> metadata);
+
+    // Metadata of tracks that left the library
+    @Query("DELETE FROM track_metadata WHERE mediaId NOT IN (SELECT mediaId FROM library_tracks)")
+    int deleteOrphans();
+}
@@ -0,0 +1,39 @@
+package com.example.mymediaplayer.data;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Extended metadata for a library track. Valid for the file version identified by dateModified;
+// once that changes the row is stale and the track is probed again.
+@Entity(tableName = "track_metadata")
+public class TrackMetadataEntity {
+    // MediaStore.Audio.Media._ID
+    @PrimaryKey
+    public long mediaId;
+
+    // library_tracks.dateModified at the time this was extracted
+    public long dateModified;
+
+    // 0 when unknown
+    public long durationMs;
+
+    // Bits per second, 0 when unknown
+    public int bitrate;
+
+    // Position within the disc, 0 when unknown
+    public int trackNumber;
+
+    public int year;
+
+    public String mimeType;
+
+    public TrackMetadataEntity(long mediaId, long dateModified, long durationMs, int bitrate, int trackNumber, int year, String mimeType) {
+        this.mediaId = mediaId;
+        this.dateModified = dateModified;
+        this.durationMs = durationMs;
+        this.bitrate = bitrate;
+        this.trackNumber = trackNumber;
+        this.year = year;
+        this.mimeType = mimeType;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.mymediaplayer.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mymediaplayer.task.CancellationToken;
+import com.example.mymediaplayer.task.TaskScheduler;
+
+// Account lookups and sign-up on the database pool. Results arrive on the main thread, and
+// not at all once `token` is cancelled.
+public class UserRepository {
+    private final AppDatabase db;
+    private final UserDao dao;
+    private final TaskScheduler tasks = TaskScheduler.getInstance();
+
+    public UserRepository(@NonNull Context context) {
+        this.db = AppDatabase.getInstance(context);
+        this.dao = db.userDao();
+    }
+
+    // Null result if there is no such user
+    public void findByUsername(@NonNull String username, @NonNull CancellationToken token,
+                               @NonNull TaskScheduler.Callback<UserEntity> onResult) {
+        tasks.submit(tasks.db(), token, t -> dao.findByUsername(username), onResult);
+    }
+
+    // The new user's id, or null if the username is taken. The check and the insert share a
+    // transaction so two sign-ups can't both pass the check.
+    public void register(@NonNull UserEntity user, @NonNull CancellationToken token,
+                         @NonNull TaskScheduler.Callback<Integer> onResult,
+                         @Nullable TaskScheduler.ErrorCallback onError) {
+        tasks.submit(tasks.db(), null, token, t -> db.runInTransaction(() -> {
+            if (dao.findByUsername(user.username) != null) return null;
+            user.id = (int) dao.insert(user);
+            return user.id;
+        }), onResult, onError);
+    }
+}
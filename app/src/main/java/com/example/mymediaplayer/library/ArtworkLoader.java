@@ -0,0 +1,213 @@
+package com.example.mymediaplayer.library;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Size;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.mymediaplayer.R;
+import com.example.mymediaplayer.task.CancellationToken;
+import com.example.mymediaplayer.task.TaskScheduler;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+// Album art for library rows. Thumbnails are decoded once at row size and kept in two levels:
+// an in-memory LRU bounded by bitmap bytes, and small JPEGs in the cache dir so later sessions
+// skip the embedded-image decode entirely. Binds never touch the disk on the main thread; a
+// miss is loaded on the io pool and dropped if the row was recycled in the meantime.
+public class ArtworkLoader {
+    private static final String TAG = "ArtworkLoader";
+    private static final int DISK_BUDGET_BYTES = 32 * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+    // Remembered misses; a zero-length file on disk marks "no artwork" across sessions. Only a
+    // definite answer is remembered: a read that failed is retried on the next bind.
+    private static final Bitmap NONE = Bitmap.createBitmap(1, 1, Bitmap.Config.ALPHA_8);
+
+    private final ContentResolver resolver;
+    private final Context context;
+    private final File dir;
+    private final int sizePx;
+    private final TaskScheduler tasks;
+    private final Executor executor;
+    private final LruCache<String, Bitmap> memory;
+    private int writesSinceTrim;
+
+    public ArtworkLoader(@NonNull Context context, int sizePx) {
+        this.context = context.getApplicationContext();
+        this.resolver = this.context.getContentResolver();
+        this.dir = new File(this.context.getCacheDir(), "artwork");
+        this.sizePx = sizePx;
+        this.tasks = TaskScheduler.getInstance();
+        this.executor = tasks.io();
+        // An eighth of the heap, which holds well over a screenful of thumbnails
+        int budget = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        this.memory = new LruCache<String, Bitmap>(budget) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    // Main thread. Shows the art for `mediaId` in `view`, replacing whatever request the view
+    // had before. `dateModified` is the track's MediaStore DATE_MODIFIED, so art cached for an
+    // older version of the file is not used. Call cancel(view) when the row is recycled.
+    public void bind(@NonNull ImageView view, long mediaId, long dateModified) {
+        cancel(view);
+        String key = mediaId + "_" + dateModified;
+        Bitmap cached = memory.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached == NONE ? null : cached);
+            return;
+        }
+        view.setImageDrawable(null);
+        CancellationToken token = new CancellationToken();
+        view.setTag(R.id.item_art, token);
+        tasks.submit(executor, token, t -> load(mediaId, key, t), bitmap -> {
+            if (bitmap != null) memory.put(key, bitmap);
+            if (view.getTag(R.id.item_art) == token) {
+                view.setTag(R.id.item_art, null);
+                view.setImageBitmap(bitmap == NONE ? null : bitmap);
+            }
+        });
+    }
+
+    public void cancel(@NonNull ImageView view) {
+        Object pending = view.getTag(R.id.item_art);
+        if (pending instanceof CancellationToken) ((CancellationToken) pending).cancel();
+        view.setTag(R.id.item_art, null);
+    }
+
+    // Call when the app is asked to release memory
+    public void trimMemory() {
+        memory.evictAll();
+    }
+
+    // The art, NONE if the track has none, or null if it couldn't be read this time
+    @WorkerThread
+    @Nullable
+    private Bitmap load(long mediaId, String key, CancellationToken token) {
+        File file = new File(dir, key + ".jpg");
+        if (file.exists()) {
+            if (file.length() == 0) return NONE;
+            Bitmap b = BitmapFactory.decodeFile(file.getPath());
+            if (b != null) {
+                // Keeps recently shown art out of the trim
+                file.setLastModified(System.currentTimeMillis());
+                return b;
+            }
+        }
+        token.throwIfCancelled();
+        Bitmap decoded = decode(MediaStoreSync.contentUri(mediaId));
+        token.throwIfCancelled();
+        if (decoded != null) writeToDisk(file, decoded);
+        return decoded;
+    }
+
+    // Same contract as load()
+    @Nullable
+    private Bitmap decode(Uri uri) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            try {
+                // Served from MediaStore's own thumbnail cache when it has one
+                return resolver.loadThumbnail(uri, new Size(sizePx, sizePx), null);
+            } catch (FileNotFoundException e) {
+                // MediaProvider's answer for a track without embedded art
+                return NONE;
+            } catch (IOException e) {
+                Log.w(TAG, "Could not load artwork for " + uri, e);
+                return null;
+            }
+        }
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            byte[] data = retriever.getEmbeddedPicture();
+            if (data == null) return NONE;
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+            opts.inSampleSize = sampleSize(opts.outWidth, opts.outHeight);
+            opts.inJustDecodeBounds = false;
+            Bitmap sampled = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+            // the file's picture itself is unreadable, which retrying won't change
+            if (sampled == null) return NONE;
+            // inSampleSize only halves; finish the downscale so cached bitmaps are row-sized
+            float scale = (float) sizePx / Math.min(sampled.getWidth(), sampled.getHeight());
+            if (scale >= 1f) return sampled;
+            Bitmap scaled = Bitmap.createScaledBitmap(sampled, Math.round(sampled.getWidth() * scale),
+                    Math.round(sampled.getHeight() * scale), true);
+            if (scaled != sampled) sampled.recycle();
+            return scaled;
+        } catch (RuntimeException e) {
+            // setDataSource failing, e.g. the file is briefly unavailable
+            Log.w(TAG, "Could not load artwork for " + uri, e);
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private int sampleSize(int width, int height) {
+        int sample = 1;
+        while (Math.min(width, height) / (sample * 2) >= sizePx) sample *= 2;
+        return sample;
+    }
+
+    // NONE is written as an empty file
+    private void writeToDisk(File file, @NonNull Bitmap bitmap) {
+        if (!dir.isDirectory() && !dir.mkdirs()) return;
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            if (bitmap != NONE) bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache artwork " + file.getName(), e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+        synchronized (this) {
+            if (++writesSinceTrim < 64) return;
+            writesSinceTrim = 0;
+        }
+        trimDisk();
+    }
+
+    // Least recently used files go first
+    private void trimDisk() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= DISK_BUDGET_BYTES) return;
+        long[] modified = new long[files.length];
+        for (int i = 0; i < files.length; i++) modified[i] = files[i].lastModified();
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+        for (Integer i : order) {
+            if (total <= DISK_BUDGET_BYTES * 3L / 4) break;
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.mymediaplayer.library;
+
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mymediaplayer.data.LibraryTrackEntity;
+import com.example.mymediaplayer.data.TrackMetadataEntity;
+import com.example.mymediaplayer.task.CancellationToken;
+import com.example.mymediaplayer.task.TaskScheduler;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Owns the library store and the filtered, sorted list shown in the library dialog, and does all
+// of their work on one serial cpu worker so filtering a large library never blocks typing.
+//
+// Every request from the UI takes the next generation number. Requests run in order, but only
+// the one holding the newest generation filters, sorts and publishes: a query superseded by the
+// next keystroke is skipped before doing any search, and a result that lost the race on its way
+// to the main thread is dropped there. The UI only ever sees immutable LibraryStore.Snapshots.
+public class LibraryEngine {
+    private static final String TAG = "LibraryEngine";
+    // Larger deltas (e.g. a storage volume coming back) rebuild the list rather than patch it
+    private static final int LARGE_DELTA = 256;
+
+    public static final int SORT_NONE = -1;
+    public static final int SORT_TITLE = 0;
+    public static final int SORT_ARTIST = 1;
+    public static final int SORT_RECENT = 2;
+    public static final int SORT_DURATION = 3;
+    // Ranked by how well each track matches the query; row order while there is no query
+    public static final int SORT_RELEVANCE = 4;
+
+    public interface Listener {
+        // Main thread
+        void onSnapshot(@NonNull LibraryStore.Snapshot snapshot);
+    }
+
+    private interface Step {
+        void run();
+    }
+
+    private final TaskScheduler tasks;
+    private final Executor worker;
+    private final CancellationToken token;
+    // Written on the main thread only; read by the worker to see whether it has been superseded
+    private volatile int generation;
+    @Nullable
+    private volatile Listener listener;
+
+    // Confined to the worker
+    private final LibraryStore store = new LibraryStore();
+    private final LibraryView view = new LibraryView();
+    private final LibrarySearch search = new LibrarySearch(store);
+    private final RankedSearch rankedSearch = new RankedSearch(store);
+    private final SortOrders sortOrders = new SortOrders(store);
+    @Nullable
+    private LibraryStore.Matcher matcher;
+    @Nullable
+    private LibraryView.RowComparator comparator;
+    private int sortMode = SORT_NONE;
+    private boolean loading;
+    // `view` no longer reflects the query or sort and must be rebuilt before publishing
+    private boolean stale;
+
+    public LibraryEngine(@NonNull TaskScheduler tasks, @NonNull CancellationToken token) {
+        this.tasks = tasks;
+        this.worker = tasks.serial(tasks.cpu());
+        this.token = token;
+    }
+
+    // Snapshots are only built while someone is listening; setting a listener publishes one
+    @MainThread
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+        if (listener != null) enqueue(() -> { });
+    }
+
+    @MainThread
+    public void setQuery(@Nullable String query) {
+        enqueue(() -> {
+            matcher = store.matcher(query);
+            stale = true;
+        });
+    }
+
+    @MainThread
+    public void setSort(int mode) {
+        enqueue(() -> {
+            boolean wasRanked = ranked();
+            sortMode = mode;
+            comparator = comparatorFor(mode);
+            // without a sort the list goes back to row order; entering or leaving ranked mode
+            // changes which rows are in it (ranked search keeps only the top matches)
+            if (comparator == null || ranked() != wasRanked) stale = true;
+            else if (!stale && !loading) sortView();
+        });
+    }
+
+    // Chunks of a full load, in order; the first one replaces whatever was loaded before
+    @MainThread
+    public void appendChunk(@NonNull List<LibraryTrackEntity> chunk, boolean first) {
+        enqueue(() -> {
+            if (first) {
+                store.clear();
+                search.clear();
+                sortOrders.clear();
+                view.clear();
+                loading = true;
+            }
+            for (LibraryTrackEntity e : chunk) {
+                int row = store.put(e.mediaId, e.title, e.artist, e.album, e.albumId, e.dateAdded, e.dateModified);
+                // a new row can displace any of the ranked ones
+                if (ranked()) stale = true;
+                else if (!stale && matches(row)) view.add(row);
+            }
+            sortOrders.invalidate();
+        });
+    }
+
+    @MainThread
+    public void finishLoading() {
+        enqueue(() -> {
+            loading = false;
+            // chunks arrive in id order; apply the chosen sort once everything is in
+            if (!stale && comparator != null) sortView();
+            Log.d(TAG, "Library loaded: " + store.describeHeap());
+        });
+    }
+
+    // Patches the store and the list in place, so an open dialog keeps its order and scroll
+    // position and only the touched rows move
+    @MainThread
+    public void applyDelta(@NonNull List<LibraryTrackEntity> changed, @NonNull List<Long> removedIds) {
+        enqueue(() -> {
+            if (stale || ranked() || changed.size() + removedIds.size() > LARGE_DELTA) {
+                for (Long id : removedIds) store.remove(id);
+                for (LibraryTrackEntity e : changed) store.put(e.mediaId, e.title, e.artist, e.album, e.albumId, e.dateAdded, e.dateModified);
+                sortOrders.invalidate();
+                stale = true;
+                return;
+            }
+            boolean sorted = comparator != null && !loading;
+            for (Long id : removedIds) {
+                int row = store.remove(id);
+                if (row >= 0) view.remove(row);
+            }
+            for (LibraryTrackEntity e : changed) {
+                // put() tombstones the old row of an existing id
+                int old = store.rowOf(e.mediaId);
+                int row = store.put(e.mediaId, e.title, e.artist, e.album, e.albumId, e.dateAdded, e.dateModified);
+                sortOrders.added(row);
+                int pos = old >= 0 ? view.remove(old) : -1;
+                if (!matches(row)) continue;
+                if (sorted) view.insertSorted(row, comparator);
+                else if (pos >= 0) view.insert(pos, row);
+                else view.add(row);
+            }
+        });
+    }
+
+    @MainThread
+    public void applyMetadata(@NonNull List<TrackMetadataEntity> batch) {
+        enqueue(() -> {
+            for (TrackMetadataEntity m : batch) store.setMetadata(m.mediaId, m.durationMs, m.trackNumber);
+            if (sortMode == SORT_DURATION && !stale && !loading) sortView();
+        });
+    }
+
+    // Every track on the same album as track `id`, in track-number order. Runs behind whatever
+    // is already queued but takes no generation, so it doesn't supersede a pending search.
+    @MainThread
+    public void albumOf(long id, @NonNull TaskScheduler.Callback<LibraryStore.Snapshot> onResult) {
+        tasks.submit(worker, token, t -> {
+            LibraryView rows = new LibraryView();
+            int row = store.rowOf(id);
+            if (row >= 0) store.sameAlbum(row, rows);
+            rows.sort((a, b) -> {
+                int c = Integer.compare(store.trackNumberAt(a), store.trackNumberAt(b));
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            return store.snapshot(rows, SectionIndex.EMPTY);
+        }, onResult);
+    }
+
+    private void enqueue(Step step) {
+        int gen = ++generation;
+        tasks.submit(worker, token, t -> {
+            step.run();
+            // a later request will publish; skip the filtering this one would have done
+            if (gen != generation || listener == null) return null;
+            if (stale) rebuild();
+            // unsorted while loading, so there are no sections to show yet
+            SectionIndex sections = loading || comparator == null ? SectionIndex.EMPTY : SectionIndex.build(store, view, sortMode);
+            return store.snapshot(view, sections);
+        }, snapshot -> {
+            Listener l = listener;
+            if (snapshot != null && gen == generation && l != null) l.onSnapshot(snapshot);
+        });
+    }
+
+    private void rebuild() {
+        view.clear();
+        if (matcher == null) {
+            int[] live = store.liveRows();
+            view.addAll(live, live.length);
+        } else if (ranked()) {
+            rankedSearch.search(matcher.key(), view);
+        } else {
+            search.search(matcher, view);
+        }
+        if (comparator != null && !loading) sortView();
+        stale = false;
+    }
+
+    // Title, artist and date added come from a stored permutation; duration changes as metadata
+    // arrives, so it is sorted directly
+    private void sortView() {
+        if (sortOrders.comparator(sortMode) != null) sortOrders.sort(sortMode, view);
+        else view.sort(comparator);
+    }
+
+    private boolean ranked() {
+        return sortMode == SORT_RELEVANCE && matcher != null;
+    }
+
+    private boolean matches(int row) {
+        return matcher == null || matcher.matches(row);
+    }
+
+    @Nullable
+    private LibraryView.RowComparator comparatorFor(int mode) {
+        switch (mode) {
+            case SORT_TITLE:
+            case SORT_ARTIST:
+            case SORT_RECENT:
+                return sortOrders.comparator(mode);
+            case SORT_DURATION:
+                return (a, b) -> Integer.compare(store.durationAt(a), store.durationAt(b));
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.mymediaplayer.library;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+// Watches the audio MediaStore collection. A scan or download produces a burst of notifications,
+// one per file or even per column update, so they are coalesced: the callback runs once the
+// collection has been quiet for QUIET_MS, or after MAX_DELAY_MS if changes never stop.
+public class LibraryObserver {
+    private static final long QUIET_MS = 750;
+    private static final long MAX_DELAY_MS = 5_000;
+
+    public interface Callback {
+        // Main thread
+        void onLibraryChanged();
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ContentResolver resolver;
+    private final Callback callback;
+    private final Runnable fire = this::fire;
+    private final ContentObserver observer = new ContentObserver(handler) {
+        @Override
+        public void onChange(boolean selfChange, @Nullable Uri uri) {
+            schedule();
+        }
+    };
+    private boolean registered;
+    // Uptime of the first change not yet reported, or 0
+    private long firstChangeAt;
+
+    public LibraryObserver(@NonNull Context context, @NonNull Callback callback) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.callback = callback;
+    }
+
+    public void register() {
+        if (registered) return;
+        resolver.registerContentObserver(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, true, observer);
+        registered = true;
+    }
+
+    public void unregister() {
+        if (!registered) return;
+        resolver.unregisterContentObserver(observer);
+        handler.removeCallbacks(fire);
+        firstChangeAt = 0;
+        registered = false;
+    }
+
+    private void schedule() {
+        long now = SystemClock.uptimeMillis();
+        if (firstChangeAt == 0) firstChangeAt = now;
+        handler.removeCallbacks(fire);
+        long deadline = Math.min(now + QUIET_MS, firstChangeAt + MAX_DELAY_MS);
+        handler.postAtTime(fire, deadline);
+    }
+
+    private void fire() {
+        firstChangeAt = 0;
+        callback.onLibraryChanged();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.mymediaplayer.library;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Query front end for LibraryStore.search that remembers recent results. Any row matching a
+// query also matches every substring of it, so typing one more character only re-checks the
+// previous result, and backspacing returns a remembered one.
+//
+// Cached results stay usable while the store grows: rows are never rewritten, so an entry is
+// brought up to date by dropping rows tombstoned since and checking rows appended since.
+// Not thread-safe; use from the thread that owns the store.
+public class LibrarySearch {
+    private static final int MAX_ENTRIES = 12;
+
+    private static final class Entry {
+        int[] rows;
+        int count;
+        // Store size and epoch when `rows` was last complete
+        int scannedTo;
+        int epoch;
+    }
+
+    private final LibraryStore store;
+    private final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final LibraryView scratch = new LibraryView();
+
+    public LibrarySearch(LibraryStore store) {
+        this.store = store;
+    }
+
+    // Appends the live rows matching `m` to `out`, in row order
+    public void search(LibraryStore.Matcher m, LibraryView out) {
+        String key = m.key();
+        Entry exact = cache.get(key);
+        if (exact != null && exact.epoch == store.epoch()) {
+            refresh(exact, m);
+            out.addAll(exact.rows, exact.count);
+            return;
+        }
+        Entry base = narrowestContaining(key);
+        scratch.clear();
+        if (base == null) {
+            store.search(m, scratch);
+        } else {
+            // Everything matching `key` is in the shorter query's result
+            for (int i = 0; i < base.count; i++) {
+                int row = base.rows[i];
+                if (store.isLive(row) && m.matches(row)) scratch.add(row);
+            }
+            for (int row = base.scannedTo; row < store.size(); row++) {
+                if (store.isLive(row) && m.matches(row)) scratch.add(row);
+            }
+        }
+        Entry e = new Entry();
+        e.rows = scratch.toArray();
+        e.count = e.rows.length;
+        e.scannedTo = store.size();
+        e.epoch = store.epoch();
+        cache.put(key, e);
+        out.addAll(e.rows, e.count);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    // Smallest cached result for a query that `key` contains
+    private Entry narrowestContaining(String key) {
+        Entry best = null;
+        Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> me = it.next();
+            Entry e = me.getValue();
+            if (e.epoch != store.epoch()) {
+                it.remove();
+                continue;
+            }
+            if (key.contains(me.getKey()) && (best == null || e.count < best.count)) best = e;
+        }
+        return best;
+    }
+
+    private void refresh(Entry e, LibraryStore.Matcher m) {
+        int n = 0;
+        for (int i = 0; i < e.count; i++) {
+            if (store.isLive(e.rows[i])) e.rows[n++] = e.rows[i];
+        }
+        e.count = n;
+        for (int row = e.scannedTo; row < store.size(); row++) {
+            if (!store.isLive(row) || !m.matches(row)) continue;
+            if (e.count == e.rows.length) e.rows = Arrays.copyOf(e.rows, Math.max(16, e.count * 2));
+            e.rows[e.count++] = row;
+        }
+        e.scannedTo = store.size();
+    }
+}
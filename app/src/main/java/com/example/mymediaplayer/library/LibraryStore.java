@@ -0,0 +1,526 @@
+package com.example.mymediaplayer.library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Column-oriented in-memory library. Each track is a row number into parallel primitive arrays;
+// artist and album are dictionary-encoded since they repeat heavily, and content Uris are built
+// only when a row is actually played or added somewhere.
+//
+// Rows are never rewritten: an update appends a new row and tombstones the old one, so any row
+// number handed out stays valid (and keeps describing the same data) until clear(). The only
+// exception is extended metadata, which arrives later and is filled in place.
+// Not thread-safe; owned by one thread (LibraryEngine's worker). Other threads read through
+// snapshot().
+public class LibraryStore {
+    private static final int NONE = -1;
+
+    // Interning table for a repeated string column, with each value's search key, a trigram
+    // index over those keys and the rows using each value
+    static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        // Append-only and only ever replaced by a larger copy, so a Snapshot can keep reading
+        // the array it captured
+        private String[] values = new String[64];
+        private int count;
+        private final List<String> keys = new ArrayList<>();
+        private final TrigramIndex index = new TrigramIndex();
+        private int[][] rows = new int[64][];
+        private int[] rowCounts = new int[64];
+
+        int encode(String s) {
+            if (s == null) return NONE;
+            Integer code = codes.get(s);
+            if (code == null) {
+                code = count;
+                codes.put(s, code);
+                if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                values[count++] = s;
+                keys.add(SearchKeys.normalize(s));
+                index.add(code, keys.get(code));
+            }
+            return code;
+        }
+
+        // Rows are added in increasing order, so each list stays sorted
+        void addRow(int code, int row) {
+            if (code == NONE) return;
+            if (code >= rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(code + 1, rows.length * 2));
+                rowCounts = Arrays.copyOf(rowCounts, rows.length);
+            }
+            int n = rowCounts[code];
+            if (rows[code] == null) rows[code] = new int[4];
+            else if (n == rows[code].length) rows[code] = Arrays.copyOf(rows[code], n * 2);
+            rows[code][n] = row;
+            rowCounts[code] = n + 1;
+        }
+
+        // Marks every row whose value contains `key`
+        void collectRows(String key, BitSet out) {
+            int[] candidates = index.candidates(key);
+            if (candidates == null) {
+                for (int code = 0; code < keys.size(); code++) collectIfMatch(code, key, out);
+            } else {
+                for (int code : candidates) collectIfMatch(code, key, out);
+            }
+        }
+
+        private void collectIfMatch(int code, String key, BitSet out) {
+            if (!keys.get(code).contains(key)) return;
+            for (int i = 0; i < rowCounts[code]; i++) out.set(rows[code][i]);
+        }
+
+        // Every row ever given `code`, tombstones included, in increasing order
+        void rowsOf(int code, LibraryView out) {
+            if (code == NONE || code >= rows.length) return;
+            for (int i = 0; i < rowCounts[code]; i++) out.add(rows[code][i]);
+        }
+
+        String decode(int code) {
+            return code == NONE ? null : values[code];
+        }
+
+        String keyAt(int code) {
+            return keys.get(code);
+        }
+
+        int size() {
+            return count;
+        }
+
+        long estimateHeapBytes() {
+            long bytes = 0;
+            for (int i = 0; i < count; i++) bytes += stringBytes(values[i]);
+            for (int i = 0; i < keys.size(); i++) {
+                // the fast path returns the value itself
+                if (keys.get(i) != values[i]) bytes += stringBytes(keys.get(i));
+            }
+            bytes += values.length * 4L + keys.size() * 4L + index.estimateHeapBytes() + 16L + rows.length * 8L;
+            for (int[] r : rows) {
+                if (r != null) bytes += 16L + r.length * 4L;
+            }
+            // HashMap node + boxed Integer + table slot
+            return bytes + count * (32L + 16L + 4L);
+        }
+
+        void clear() {
+            codes.clear();
+            values = new String[64];
+            count = 0;
+            keys.clear();
+            index.clear();
+            rows = new int[64][];
+            rowCounts = new int[64];
+        }
+    }
+
+    private long[] ids = new long[0];
+    private long[] dateAdded = new long[0];
+    private long[] dateModified = new long[0];
+    private String[] titles = new String[0];
+    // SearchKeys.normalize(title), computed once per row
+    private String[] titleKeys = new String[0];
+    private int[] artistCodes = new int[0];
+    private int[] albumCodes = new int[0];
+    // MediaStore album ids, 0 if unknown
+    private long[] albumIds = new long[0];
+    // Extended metadata, 0 until known
+    private int[] durations = new int[0];
+    private int[] trackNumbers = new int[0];
+    private final Dictionary artists = new Dictionary();
+    private final Dictionary albums = new Dictionary();
+    private final BitSet removed = new BitSet();
+    private final TrigramIndex titleIndex = new TrigramIndex();
+    private final LongIntHashMap rowById = new LongIntHashMap(1024);
+    private int size;
+    private int version;
+    // Bumped by clear(), which invalidates dictionary codes
+    private int epoch;
+
+    // Number of rows ever written, including tombstoned ones; valid rows are [0, size())
+    public int size() {
+        return size;
+    }
+
+    public int liveCount() {
+        return rowById.size();
+    }
+
+    // Bumped on every mutation, so derived views can tell when they are stale
+    public int version() {
+        return version;
+    }
+
+    // Changes only on clear(), after which earlier row numbers mean nothing
+    public int epoch() {
+        return epoch;
+    }
+
+    public boolean isLive(int row) {
+        return row >= 0 && row < size && !removed.get(row);
+    }
+
+    // Row currently holding `id`, or -1
+    public int rowOf(long id) {
+        return rowById.get(id);
+    }
+
+    public long idAt(int row) {
+        return ids[row];
+    }
+
+    public String titleAt(int row) {
+        return titles[row];
+    }
+
+    public String artistAt(int row) {
+        return artists.decode(artistCodes[row]);
+    }
+
+    public String albumAt(int row) {
+        return albums.decode(albumCodes[row]);
+    }
+
+    // Dictionary code for the row's artist (-1 for none); equal codes mean equal artists
+    public int artistCodeAt(int row) {
+        return artistCodes[row];
+    }
+
+    public int albumCodeAt(int row) {
+        return albumCodes[row];
+    }
+
+    public long albumIdAt(int row) {
+        return albumIds[row];
+    }
+
+    public long dateAddedAt(int row) {
+        return dateAdded[row];
+    }
+
+    public long dateModifiedAt(int row) {
+        return dateModified[row];
+    }
+
+    // Milliseconds, 0 when not known yet
+    public int durationAt(int row) {
+        return durations[row];
+    }
+
+    public int trackNumberAt(int row) {
+        return trackNumbers[row];
+    }
+
+    String titleKeyAt(int row) {
+        return titleKeys[row];
+    }
+
+    Dictionary artists() {
+        return artists;
+    }
+
+    Dictionary albums() {
+        return albums;
+    }
+
+    // Adds the live rows on the same album as `row`, in row order; none if it has no album.
+    // Albums are told apart by MediaStore album id, found among the rows sharing the name.
+    public void sameAlbum(int row, LibraryView out) {
+        long albumId = albumIds[row];
+        if (albumId == 0) return;
+        LibraryView named = new LibraryView();
+        albums.rowsOf(albumCodes[row], named);
+        for (int i = 0; i < named.size(); i++) {
+            int r = named.rowAt(i);
+            if (isLive(r) && albumIds[r] == albumId) out.add(r);
+        }
+    }
+
+    // Returns the row updated, or -1 if the id is not in the library
+    public int setMetadata(long id, long durationMs, int trackNumber) {
+        int row = rowById.get(id);
+        if (row < 0) return -1;
+        durations[row] = (int) Math.min(durationMs, Integer.MAX_VALUE);
+        trackNumbers[row] = trackNumber;
+        version++;
+        return row;
+    }
+
+    // Adds a track, or replaces the row holding the same id. Returns the new row.
+    public int put(long id, String title, String artist, String album, long albumId, long added, long modified) {
+        int old = rowById.get(id);
+        if (old >= 0) removed.set(old);
+        ensureCapacity(size + 1);
+        int row = size++;
+        ids[row] = id;
+        titles[row] = title;
+        titleKeys[row] = SearchKeys.normalize(title);
+        artistCodes[row] = artists.encode(artist);
+        albumCodes[row] = albums.encode(album);
+        albumIds[row] = albumId;
+        titleIndex.add(row, titleKeys[row]);
+        artists.addRow(artistCodes[row], row);
+        albums.addRow(albumCodes[row], row);
+        dateAdded[row] = added;
+        dateModified[row] = modified;
+        // Keep the known metadata until the enricher reports on the new version of the file
+        durations[row] = old >= 0 ? durations[old] : 0;
+        trackNumbers[row] = old >= 0 ? trackNumbers[old] : 0;
+        rowById.put(id, row);
+        version++;
+        return row;
+    }
+
+    // Returns the tombstoned row, or -1 if the id was not present
+    public int remove(long id) {
+        int row = rowById.remove(id);
+        if (row >= 0) {
+            removed.set(row);
+            version++;
+        }
+        return row;
+    }
+
+    public void clear() {
+        ids = new long[0];
+        dateAdded = new long[0];
+        dateModified = new long[0];
+        titles = new String[0];
+        titleKeys = new String[0];
+        artistCodes = new int[0];
+        albumCodes = new int[0];
+        albumIds = new long[0];
+        durations = new int[0];
+        trackNumbers = new int[0];
+        artists.clear();
+        albums.clear();
+        removed.clear();
+        titleIndex.clear();
+        rowById.clear();
+        size = 0;
+        version++;
+        epoch++;
+    }
+
+    // Matches rows against one query. Artist and album are tested once per distinct value rather
+    // than once per row, and nothing is allocated per row.
+    public final class Matcher {
+        private final String key;
+        private byte[] artistHits;
+        private byte[] albumHits;
+        private int dictionaryEpoch;
+
+        private Matcher(String key) {
+            this.key = key;
+            resetHits();
+        }
+
+        private void resetHits() {
+            artistHits = new byte[artists.size()];
+            albumHits = new byte[albums.size()];
+            dictionaryEpoch = epoch;
+        }
+
+        // Normalised query this matcher tests for
+        public String key() {
+            return key;
+        }
+
+        public boolean matches(int row) {
+            // clear() renumbers the dictionaries
+            if (dictionaryEpoch != epoch) resetHits();
+            return titleKeys[row].contains(key)
+                    || hit(artists, artistHits, artistCodes[row])
+                    || hit(albums, albumHits, albumCodes[row]);
+        }
+
+        // 0 = not tested yet, 1 = miss, 2 = hit; codes added after this matcher was made are
+        // tested directly
+        private boolean hit(Dictionary dict, byte[] hits, int code) {
+            if (code == NONE) return false;
+            if (code >= hits.length) return dict.keyAt(code).contains(key);
+            if (hits[code] == 0) hits[code] = dict.keyAt(code).contains(key) ? (byte) 2 : (byte) 1;
+            return hits[code] == 2;
+        }
+    }
+
+    // Matcher for a raw user query, or null if it normalises to nothing (matches everything)
+    public Matcher matcher(String query) {
+        String key = SearchKeys.normalize(query);
+        return key.isEmpty() ? null : new Matcher(key);
+    }
+
+    // Appends the live rows matching `m` to `out`, in row order. Keys of at least three chars
+    // go through the trigram indexes and only candidates are verified; shorter ones scan.
+    public void search(Matcher m, LibraryView out) {
+        String key = m.key();
+        int[] titleCandidates = titleIndex.candidates(key);
+        if (titleCandidates == null) {
+            for (int row = 0; row < size; row++) {
+                if (!removed.get(row) && m.matches(row)) out.add(row);
+            }
+            return;
+        }
+        BitSet hits = new BitSet(size);
+        for (int row : titleCandidates) {
+            if (titleKeys[row].contains(key)) hits.set(row);
+        }
+        artists.collectRows(key, hits);
+        albums.collectRows(key, hits);
+        hits.andNot(removed);
+        for (int row = hits.nextSetBit(0); row >= 0; row = hits.nextSetBit(row + 1)) out.add(row);
+    }
+
+    // Live rows in insertion order
+    public int[] liveRows() {
+        int[] rows = new int[liveCount()];
+        int n = 0;
+        for (int row = 0; row < size; row++) {
+            if (!removed.get(row)) rows[n++] = row;
+        }
+        return n == rows.length ? rows : Arrays.copyOf(rows, n);
+    }
+
+    // Read-only copy of `view` that other threads can use while this store keeps changing. Only
+    // the row numbers are copied: the snapshot holds on to the column arrays as they are now,
+    // and since rows are never rewritten and growing replaces an array rather than moving rows,
+    // every row it covers keeps its data. Durations, which are filled in place, are copied.
+    public Snapshot snapshot(LibraryView view, SectionIndex sections) {
+        return new Snapshot(this, view.toArray(), sections);
+    }
+
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(new LibraryStore(), new int[0], SectionIndex.EMPTY);
+
+        private final int[] rows;
+        private final long[] ids;
+        private final long[] dateAdded;
+        private final long[] dateModified;
+        private final String[] titles;
+        private final int[] artistCodes;
+        private final int[] albumCodes;
+        private final int[] durations;
+        private final String[] artistValues;
+        private final String[] albumValues;
+        private final SectionIndex sections;
+
+        private Snapshot(LibraryStore store, int[] rows, SectionIndex sections) {
+            this.rows = rows;
+            this.sections = sections;
+            this.ids = store.ids;
+            this.dateAdded = store.dateAdded;
+            this.dateModified = store.dateModified;
+            this.titles = store.titles;
+            this.artistCodes = store.artistCodes;
+            this.albumCodes = store.albumCodes;
+            this.durations = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) durations[i] = store.durations[rows[i]];
+            this.artistValues = store.artists.values;
+            this.albumValues = store.albums.values;
+        }
+
+        public int size() {
+            return rows.length;
+        }
+
+        public SectionIndex sections() {
+            return sections;
+        }
+
+        public long idAt(int position) {
+            return ids[rows[position]];
+        }
+
+        public String titleAt(int position) {
+            return titles[rows[position]];
+        }
+
+        public String artistAt(int position) {
+            int code = artistCodes[rows[position]];
+            return code == NONE ? null : artistValues[code];
+        }
+
+        public String albumAt(int position) {
+            int code = albumCodes[rows[position]];
+            return code == NONE ? null : albumValues[code];
+        }
+
+        public long dateAddedAt(int position) {
+            return dateAdded[rows[position]];
+        }
+
+        public long dateModifiedAt(int position) {
+            return dateModified[rows[position]];
+        }
+
+        public int durationAt(int position) {
+            return durations[position];
+        }
+    }
+
+    // Approximate retained size of this store
+    public long estimateHeapBytes() {
+        long bytes = arrayBytes(ids.length, 8) + arrayBytes(dateAdded.length, 8) + arrayBytes(dateModified.length, 8)
+                + arrayBytes(titles.length, 4) + arrayBytes(titleKeys.length, 4) + arrayBytes(artistCodes.length, 4) + arrayBytes(albumCodes.length, 4) + arrayBytes(albumIds.length, 8)
+                + arrayBytes(durations.length, 4) + arrayBytes(trackNumbers.length, 4)
+                + removed.size() / 8 + rowById.estimateHeapBytes() + titleIndex.estimateHeapBytes()
+                + artists.estimateHeapBytes() + albums.estimateHeapBytes();
+        for (int row = 0; row < size; row++) {
+            bytes += stringBytes(titles[row]);
+            if (titleKeys[row] != titles[row]) bytes += stringBytes(titleKeys[row]);
+        }
+        return bytes;
+    }
+
+    // Approximate size of the same live tracks held the previous way: a List<MediaItem> with a
+    // separate String per field and a Uri per track, copied once more into a filtered list
+    public long estimateObjectListBytes() {
+        long perItem = 48   // MediaItem: header, two longs, four references
+                + 120       // Uri built by ContentUris.withAppendedId (HierarchicalUri and its parts)
+                + 2 * 4;    // a slot in `library` and one in `filteredLibrary`
+        long bytes = 2 * arrayBytes(liveCount(), 4);
+        for (int row = 0; row < size; row++) {
+            if (removed.get(row)) continue;
+            bytes += perItem + stringBytes(titles[row]) + stringBytes(artistAt(row)) + stringBytes(albumAt(row));
+        }
+        return bytes;
+    }
+
+    public String describeHeap() {
+        long columnar = estimateHeapBytes();
+        long objects = estimateObjectListBytes();
+        return String.format(Locale.US, "%d tracks, %d artists, %d albums: columnar ~%d KB vs object list ~%d KB (%.0f%% saved)",
+                liveCount(), artists.size(), albums.size(), columnar / 1024, objects / 1024,
+                objects == 0 ? 0.0 : 100.0 * (objects - columnar) / objects);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ids.length) return;
+        int capacity = Math.max(needed, Math.max(16, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, capacity);
+        dateAdded = Arrays.copyOf(dateAdded, capacity);
+        dateModified = Arrays.copyOf(dateModified, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        titleKeys = Arrays.copyOf(titleKeys, capacity);
+        artistCodes = Arrays.copyOf(artistCodes, capacity);
+        albumCodes = Arrays.copyOf(albumCodes, capacity);
+        albumIds = Arrays.copyOf(albumIds, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        trackNumbers = Arrays.copyOf(trackNumbers, capacity);
+    }
+
+    private static long arrayBytes(int length, int width) {
+        return 16L + (long) length * width;
+    }
+
+    static long stringBytes(String s) {
+        // String object plus its backing array; Latin-1 strings are stored one byte per char
+        return s == null ? 0 : 24L + 16L + s.length();
+    }
+}
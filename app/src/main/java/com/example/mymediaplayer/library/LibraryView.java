@@ -0,0 +1,108 @@
+package com.example.mymediaplayer.library;
+
+import java.util.Arrays;
+
+// An ordered subset of LibraryStore rows, e.g. the filtered and sorted list shown in the library
+// dialog. Holds row numbers only; nothing is copied out of the store.
+public class LibraryView {
+
+    public interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+
+    private int[] rows = new int[16];
+    private int size;
+    private int[] scratch = new int[0];
+
+    public int size() {
+        return size;
+    }
+
+    public int rowAt(int position) {
+        return rows[position];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int row) {
+        if (size == rows.length) rows = Arrays.copyOf(rows, Math.max(16, size * 2));
+        rows[size++] = row;
+    }
+
+    public void addAll(int[] src, int count) {
+        if (size + count > rows.length) rows = Arrays.copyOf(rows, Math.max(size + count, size * 2));
+        System.arraycopy(src, 0, rows, size, count);
+        size += count;
+    }
+
+    // Removes the first occurrence of `row`; returns its position or -1
+    public int remove(int row) {
+        int i = indexOf(row);
+        if (i >= 0) removeAt(i);
+        return i;
+    }
+
+    public int indexOf(int row) {
+        for (int i = 0; i < size; i++) {
+            if (rows[i] == row) return i;
+        }
+        return -1;
+    }
+
+    public void removeAt(int position) {
+        System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+        size--;
+    }
+
+    public void insert(int position, int row) {
+        if (size == rows.length) rows = Arrays.copyOf(rows, Math.max(16, size * 2));
+        System.arraycopy(rows, position, rows, position + 1, size - position);
+        rows[position] = row;
+        size++;
+    }
+
+    // Inserts `row` after every row that does not sort after it, keeping a sorted view sorted
+    // (and stable, matching sort()). Returns the position used.
+    public int insertSorted(int row, RowComparator comparator) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparator.compare(row, rows[mid]) < 0) hi = mid;
+            else lo = mid + 1;
+        }
+        insert(lo, row);
+        return lo;
+    }
+
+    // Copy of the current rows, safe to hand to another thread
+    public int[] toArray() {
+        return Arrays.copyOf(rows, size);
+    }
+
+    // Stable merge sort, like List.sort
+    public void sort(RowComparator comparator) {
+        if (size < 2) return;
+        if (scratch.length < size) scratch = new int[rows.length];
+        int[] src = rows;
+        int[] dst = scratch;
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size; lo += 2 * width) {
+                int mid = Math.min(lo + width, size);
+                int hi = Math.min(lo + 2 * width, size);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    dst[k++] = comparator.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+                }
+                while (i < mid) dst[k++] = src[i++];
+                while (j < hi) dst[k++] = src[j++];
+            }
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+        rows = src;
+        scratch = dst;
+    }
+}
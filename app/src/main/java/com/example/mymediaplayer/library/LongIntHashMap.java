@@ -0,0 +1,111 @@
+package com.example.mymediaplayer.library;
+
+import java.util.Arrays;
+
+// Open-addressing long -> int map (linear probing, backward-shift deletion) so that id lookups
+// over tens of thousands of tracks don't box every key and value.
+public class LongIntHashMap {
+    private static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public LongIntHashMap(int expected) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < expected) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns -1 when absent; only meant for non-negative values
+    public int get(long key) {
+        int i = indexOf(key);
+        return i < 0 ? MISSING : values[i];
+    }
+
+    public void put(long key, int value) {
+        if ((size + 1) * 4 > keys.length * 3) grow();
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    public int remove(long key) {
+        int i = indexOf(key);
+        if (i < 0) return MISSING;
+        int old = values[i];
+        // Shift following entries of the same probe run back into the hole
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (used[j]) {
+            int home = slot(keys[j]);
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    // Approximate bytes held by the backing arrays
+    public long estimateHeapBytes() {
+        return 16L + keys.length * 8L + 16L + values.length * 4L + 16L + used.length;
+    }
+
+    private int indexOf(long key) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(keys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.mymediaplayer.library;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.mymediaplayer.data.AppDatabase;
+import com.example.mymediaplayer.data.LibraryTrackDao;
+import com.example.mymediaplayer.data.LibraryTrackEntity;
+import com.example.mymediaplayer.data.LibrarySyncState;
+import com.example.mymediaplayer.playback.MediaItem;
+import com.example.mymediaplayer.task.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Keeps the library_tracks cache in step with MediaStore. Only rows added or modified since the
+// last pass are read (by generation on API 30+, by DATE_MODIFIED before that); removals are found
+// by comparing ids, which is a single-column scan.
+public class MediaStoreSync {
+    // Rows per published chunk while loading the cache or scanning MediaStore in full
+    public static final int CHUNK_SIZE = 500;
+    private static final Uri AUDIO_URI = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+    private static final String[] PROJECTION = new String[]{
+            MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.ALBUM,
+            MediaStore.Audio.Media.ALBUM_ID,
+            MediaStore.Audio.Media.DATE_ADDED,
+            MediaStore.Audio.Media.DATE_MODIFIED
+    };
+
+    public interface ChunkListener {
+        // Worker thread. `loaded` counts rows published so far including this chunk, out of `total`.
+        void onChunk(@NonNull List<LibraryTrackEntity> chunk, int loaded, int total);
+    }
+
+    // What one sync pass changed in the cache
+    public static class Delta {
+        public final List<LibraryTrackEntity> upserted;
+        public final List<Long> removedIds;
+        // The cache was rebuilt from scratch; `upserted` is the whole library and was already
+        // streamed to the ChunkListener
+        public final boolean full;
+
+        Delta(List<LibraryTrackEntity> upserted, List<Long> removedIds, boolean full) {
+            this.upserted = upserted;
+            this.removedIds = removedIds;
+            this.full = full;
+        }
+
+        public boolean isEmpty() {
+            return upserted.isEmpty() && removedIds.isEmpty() && !full;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Context context;
+    private final LibraryTrackDao dao;
+    private final LibrarySyncState state;
+
+    public MediaStoreSync(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+        this.resolver = this.context.getContentResolver();
+        this.dao = AppDatabase.getInstance(this.context).libraryTrackDao();
+        this.state = new LibrarySyncState(this.context);
+    }
+
+    @NonNull
+    public static Uri contentUri(long mediaId) {
+        return ContentUris.withAppendedId(AUDIO_URI, mediaId);
+    }
+
+    @NonNull
+    public static MediaItem toMediaItem(@NonNull LibraryTrackEntity e) {
+        return new MediaItem(e.mediaId, e.title, e.artist, e.album, e.dateAdded, contentUri(e.mediaId));
+    }
+
+    // Builds the MediaItem (and its Uri) for one listed track only when it is actually needed
+    @NonNull
+    public static MediaItem toMediaItem(@NonNull LibraryStore.Snapshot snapshot, int position) {
+        long id = snapshot.idAt(position);
+        return new MediaItem(id, snapshot.titleAt(position), snapshot.artistAt(position), snapshot.albumAt(position),
+                snapshot.dateAddedAt(position), contentUri(id));
+    }
+
+    // Streams the cached library in CHUNK_SIZE pieces; returns the number of rows loaded
+    @WorkerThread
+    public int loadCached(@NonNull CancellationToken token, @NonNull ChunkListener listener) {
+        int total = dao.count();
+        int loaded = 0;
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            token.throwIfCancelled();
+            List<LibraryTrackEntity> page = dao.getPage(afterId, CHUNK_SIZE);
+            if (page.isEmpty()) break;
+            loaded += page.size();
+            listener.onChunk(page, loaded, Math.max(total, loaded));
+            afterId = page.get(page.size() - 1).mediaId;
+            if (page.size() < CHUNK_SIZE) break;
+        }
+        return loaded;
+    }
+
+    @WorkerThread
+    @NonNull
+    // Cancellation is checked between queries and before anything is written, so a cancelled
+    // pass leaves the cache and sync state as they were
+    public Delta sync(@NonNull CancellationToken token, @NonNull ChunkListener fullScanListener) {
+        long startedAtSeconds = System.currentTimeMillis() / 1000;
+        String version = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? MediaStore.getVersion(context) : "";
+        boolean full = !version.equals(state.getMediaStoreVersion()) || dao.count() == 0;
+
+        Map<String, Long> generations = new HashMap<>();
+        List<LibraryTrackEntity> changed = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+
+        if (full) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                // Read the generations first; rows changing during the scan are simply read again next time
+                for (String volume : MediaStore.getExternalVolumeNames(context)) {
+                    generations.put(volume, MediaStore.getGeneration(context, volume));
+                }
+            }
+            queryRows(AUDIO_URI, null, null, changed, token, fullScanListener);
+        } else {
+            Set<Long> present = queryAllIds();
+            Set<Long> cached = new HashSet<>(dao.getAllIds());
+            for (Long id : cached) {
+                if (!present.contains(id)) removed.add(id);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                for (String volume : MediaStore.getExternalVolumeNames(context)) {
+                    long since = state.getGeneration(volume);
+                    generations.put(volume, MediaStore.getGeneration(context, volume));
+                    queryRows(MediaStore.Audio.Media.getContentUri(volume),
+                            MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?",
+                            new String[]{String.valueOf(since)}, changed, token, null);
+                }
+            } else {
+                queryRows(AUDIO_URI, MediaStore.MediaColumns.DATE_MODIFIED + " >= ?",
+                        new String[]{String.valueOf(state.getLastSyncSeconds())}, changed, token, null);
+                // Files copied in with an old modification time still need to be picked up
+                Set<Long> seen = new HashSet<>();
+                for (LibraryTrackEntity e : changed) seen.add(e.mediaId);
+                List<Long> missing = new ArrayList<>();
+                for (Long id : present) {
+                    if (!cached.contains(id) && !seen.contains(id)) missing.add(id);
+                }
+                queryByIds(missing, changed, token);
+            }
+        }
+
+        token.throwIfCancelled();
+        dao.applyDelta(changed, removed, full);
+        state.save(version, startedAtSeconds, generations);
+        return new Delta(changed, removed, full);
+    }
+
+    private Set<Long> queryAllIds() {
+        Set<Long> ids = new HashSet<>();
+        try (Cursor c = resolver.query(AUDIO_URI, new String[]{MediaStore.Audio.Media._ID}, null, null, null)) {
+            if (c != null) {
+                while (c.moveToNext()) ids.add(c.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    private void queryByIds(List<Long> ids, List<LibraryTrackEntity> out, CancellationToken token) {
+        for (int i = 0; i < ids.size(); i += LibraryTrackDao.MAX_IDS_PER_QUERY) {
+            List<Long> chunk = ids.subList(i, Math.min(i + LibraryTrackDao.MAX_IDS_PER_QUERY, ids.size()));
+            StringBuilder in = new StringBuilder(MediaStore.Audio.Media._ID).append(" IN (");
+            String[] args = new String[chunk.size()];
+            for (int j = 0; j < chunk.size(); j++) {
+                in.append(j == 0 ? "?" : ",?");
+                args[j] = String.valueOf(chunk.get(j));
+            }
+            in.append(')');
+            queryRows(AUDIO_URI, in.toString(), args, out, token, null);
+        }
+    }
+
+    private void queryRows(Uri uri, @Nullable String selection, @Nullable String[] args,
+                           List<LibraryTrackEntity> out, CancellationToken token, @Nullable ChunkListener listener) {
+        try (Cursor c = resolver.query(uri, PROJECTION, selection, args, null)) {
+            if (c == null) return;
+            int total = c.getCount();
+            int published = out.size();
+            int idCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media._ID);
+            int titleCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.TITLE);
+            int artistCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST);
+            int albumCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM);
+            int albumIdCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM_ID);
+            int addedCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_ADDED);
+            int modifiedCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_MODIFIED);
+            while (c.moveToNext()) {
+                if ((out.size() & 0xff) == 0) token.throwIfCancelled();
+                String title = c.getString(titleCol);
+                out.add(new LibraryTrackEntity(
+                        c.getLong(idCol),
+                        title == null ? "Unknown" : title,
+                        c.getString(artistCol),
+                        c.getString(albumCol),
+                        c.getLong(albumIdCol),
+                        c.getLong(addedCol),
+                        c.getLong(modifiedCol)));
+                if (listener != null && out.size() - published >= CHUNK_SIZE) {
+                    listener.onChunk(new ArrayList<>(out.subList(published, out.size())), out.size(), total);
+                    published = out.size();
+                }
+            }
+            if (listener != null && (out.size() > published || total == 0)) {
+                listener.onChunk(new ArrayList<>(out.subList(published, out.size())), out.size(), total);
+            }
+        }
+    }
+}
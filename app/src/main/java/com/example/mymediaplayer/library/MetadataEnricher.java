@@ -0,0 +1,183 @@
+package com.example.mymediaplayer.library;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.mymediaplayer.data.AppDatabase;
+import com.example.mymediaplayer.data.LibraryTrackDao;
+import com.example.mymediaplayer.data.TrackMetadataDao;
+import com.example.mymediaplayer.data.TrackMetadataEntity;
+import com.example.mymediaplayer.task.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+
+// Fills track_metadata for library tracks that have none, or whose file changed since it was
+// extracted. MediaStore already has most fields, so each batch is one query; only tracks it
+// can't describe are opened with MediaMetadataRetriever, a few at a time on the probe pool.
+// Every track gets a row even if probing fails, so nothing is probed twice for the same file.
+public class MetadataEnricher {
+    private static final String TAG = "MetadataEnricher";
+    private static final int BATCH_SIZE = LibraryTrackDao.MAX_IDS_PER_QUERY;
+    // Retriever probes open and parse whole files; keep only a couple in flight
+    private static final int MAX_PROBES_IN_FLIGHT = 2;
+
+    public interface Listener {
+        // Worker thread, once per persisted batch
+        void onMetadata(@NonNull List<TrackMetadataEntity> batch);
+    }
+
+    private final Context context;
+    private final ContentResolver resolver;
+    private final TrackMetadataDao dao;
+    private final Executor probePool;
+
+    public MetadataEnricher(@NonNull Context context, @NonNull Executor probePool) {
+        this.context = context.getApplicationContext();
+        this.resolver = this.context.getContentResolver();
+        this.dao = AppDatabase.getInstance(this.context).trackMetadataDao();
+        this.probePool = probePool;
+    }
+
+    @WorkerThread
+    @NonNull
+    public List<TrackMetadataEntity> loadCached() {
+        return dao.getAll();
+    }
+
+    // Returns the number of tracks enriched
+    @WorkerThread
+    public int enrich(@NonNull CancellationToken token, @NonNull Listener listener) {
+        dao.deleteOrphans();
+        List<TrackMetadataDao.StaleTrack> stale = dao.getStale();
+        for (int i = 0; i < stale.size(); i += BATCH_SIZE) {
+            token.throwIfCancelled();
+            List<TrackMetadataDao.StaleTrack> batch = stale.subList(i, Math.min(i + BATCH_SIZE, stale.size()));
+            List<TrackMetadataEntity> out = fromMediaStore(batch);
+            probeIncomplete(out, token);
+            dao.upsertAll(out);
+            listener.onMetadata(out);
+        }
+        if (!stale.isEmpty()) Log.d(TAG, "Enriched " + stale.size() + " tracks");
+        return stale.size();
+    }
+
+    private List<TrackMetadataEntity> fromMediaStore(List<TrackMetadataDao.StaleTrack> batch) {
+        Map<Long, TrackMetadataEntity> found = new HashMap<>();
+        boolean hasBitrate = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+        List<String> columns = new ArrayList<>();
+        columns.add(MediaStore.Audio.Media._ID);
+        columns.add(MediaStore.Audio.Media.DURATION);
+        columns.add(MediaStore.Audio.Media.TRACK);
+        columns.add(MediaStore.Audio.Media.YEAR);
+        columns.add(MediaStore.Audio.Media.MIME_TYPE);
+        if (hasBitrate) columns.add(MediaStore.Audio.Media.BITRATE);
+
+        StringBuilder in = new StringBuilder(MediaStore.Audio.Media._ID).append(" IN (");
+        String[] args = new String[batch.size()];
+        for (int j = 0; j < batch.size(); j++) {
+            in.append(j == 0 ? "?" : ",?");
+            args[j] = String.valueOf(batch.get(j).mediaId);
+        }
+        in.append(')');
+        try (Cursor c = resolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                columns.toArray(new String[0]), in.toString(), args, null)) {
+            if (c != null) {
+                while (c.moveToNext()) {
+                    long id = c.getLong(0);
+                    found.put(id, new TrackMetadataEntity(id, 0, c.getLong(1),
+                            hasBitrate ? c.getInt(5) : 0,
+                            // MediaStore encodes the disc number in the thousands
+                            c.getInt(2) % 1000,
+                            c.getInt(3),
+                            c.getString(4)));
+                }
+            }
+        }
+
+        List<TrackMetadataEntity> out = new ArrayList<>(batch.size());
+        for (TrackMetadataDao.StaleTrack t : batch) {
+            TrackMetadataEntity m = found.get(t.mediaId);
+            if (m == null) m = new TrackMetadataEntity(t.mediaId, 0, 0, 0, 0, 0, null);
+            m.dateModified = t.dateModified;
+            out.add(m);
+        }
+        return out;
+    }
+
+    // Fill in what MediaStore left out, running up to MAX_PROBES_IN_FLIGHT retrievers at once
+    private void probeIncomplete(List<TrackMetadataEntity> batch, CancellationToken token) {
+        ExecutorCompletionService<TrackMetadataEntity> probes = new ExecutorCompletionService<>(probePool);
+        int inFlight = 0;
+        for (TrackMetadataEntity m : batch) {
+            if (m.durationMs > 0 && m.bitrate > 0) continue;
+            token.throwIfCancelled();
+            if (inFlight == MAX_PROBES_IN_FLIGHT) {
+                awaitProbe(probes);
+                inFlight--;
+            }
+            probes.submit(() -> probe(m), m);
+            inFlight++;
+        }
+        while (inFlight-- > 0) awaitProbe(probes);
+    }
+
+    private static void awaitProbe(ExecutorCompletionService<TrackMetadataEntity> probes) {
+        try {
+            probes.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Probe failed", e.getCause());
+        }
+    }
+
+    // Overwrites only the fields MediaStore had no value for
+    private void probe(TrackMetadataEntity m) {
+        Uri uri = MediaStoreSync.contentUri(m.mediaId);
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            if (m.durationMs <= 0) m.durationMs = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            if (m.bitrate <= 0) m.bitrate = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE));
+            if (m.trackNumber <= 0) m.trackNumber = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_CD_TRACK_NUMBER));
+            if (m.year <= 0) m.year = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_YEAR));
+            if (m.mimeType == null) m.mimeType = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_MIMETYPE);
+        } catch (RuntimeException e) {
+            // Unreadable or unsupported file; keep what MediaStore had
+            Log.w(TAG, "Could not probe " + uri + ": " + e.getMessage());
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    // Leading digits only: track numbers come as "3/12"
+    private static long parseLong(@Nullable String s) {
+        if (s == null) return 0;
+        long v = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') break;
+            v = v * 10 + (ch - '0');
+        }
+        return v;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.mymediaplayer.library;
+
+import java.util.Arrays;
+
+// "Best match" search: every live row is scored against the query and only the LIMIT best are
+// kept, in a bounded min-heap, so ranking a large library never sorts (or holds) all of it.
+//
+// A whole-query hit scores by where it lands (the entire field, its start, the start of a word,
+// anywhere); otherwise each query word may match a word of the field within a small edit
+// distance, so "bohemian rapsody" still finds "Bohemian Rhapsody". The last query word only
+// has to match the start of a word, since it is usually still being typed. Artist and album
+// score a little below the title and are scored once per dictionary value.
+// Not thread-safe; use from the thread that owns the store.
+final class RankedSearch {
+    static final int LIMIT = 100;
+
+    private static final int EXACT = 1000;
+    private static final int PREFIX = 800;
+    private static final int WORD = 600;
+    private static final int SUBSTRING = 400;
+    // Minus FUZZY_STEP per edit
+    private static final int FUZZY = 300;
+    private static final int FUZZY_STEP = 50;
+
+    private final LibraryStore store;
+    // Dynamic programming rows for the edit distance, grown as needed
+    private int[] prev = new int[32];
+    private int[] cur = new int[32];
+
+    RankedSearch(LibraryStore store) {
+        this.store = store;
+    }
+
+    // Appends up to LIMIT live rows matching `key` (normalised), best first
+    void search(String key, LibraryView out) {
+        String[] words = words(key);
+        int[] artistScores = unscored(store.artists().size());
+        int[] albumScores = unscored(store.albums().size());
+        long[] heap = new long[LIMIT];
+        int count = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isLive(row)) continue;
+            int score = score(key, words, store.titleKeyAt(row));
+            score = Math.max(score, cached(store.artists(), artistScores, store.artistCodeAt(row), key, words) * 4 / 5);
+            score = Math.max(score, cached(store.albums(), albumScores, store.albumCodeAt(row), key, words) * 3 / 5);
+            if (score <= 0) continue;
+            // Higher score first, then earlier row
+            long entry = ((long) score << 32) | (Integer.MAX_VALUE - row);
+            if (count < LIMIT) {
+                heap[count] = entry;
+                siftUp(heap, count++);
+            } else if (entry > heap[0]) {
+                heap[0] = entry;
+                siftDown(heap, count);
+            }
+        }
+        Arrays.sort(heap, 0, count);
+        for (int i = count - 1; i >= 0; i--) out.add(Integer.MAX_VALUE - (int) heap[i]);
+    }
+
+    private int cached(LibraryStore.Dictionary dict, int[] scores, int code, String key, String[] words) {
+        if (code < 0) return 0;
+        // values added since the search started are scored directly
+        if (code >= scores.length) return score(key, words, dict.keyAt(code));
+        if (scores[code] < 0) scores[code] = score(key, words, dict.keyAt(code));
+        return scores[code];
+    }
+
+    private int score(String key, String[] words, String field) {
+        if (field.isEmpty()) return 0;
+        int at = field.indexOf(key);
+        if (at == 0) return field.length() == key.length() ? EXACT : PREFIX;
+        if (at > 0) {
+            for (; at >= 0; at = field.indexOf(key, at + 1)) {
+                if (!Character.isLetterOrDigit(field.charAt(at - 1))) return WORD;
+            }
+            return SUBSTRING;
+        }
+        return fuzzy(words, field);
+    }
+
+    // Every query word must match some word of `field` within its bound
+    private int fuzzy(String[] words, String field) {
+        if (words.length == 0) return 0;
+        int total = 0;
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            int bound = bound(word.length());
+            boolean prefix = w == words.length - 1;
+            int best = bound + 1;
+            int start = -1;
+            for (int i = 0; i <= field.length() && best > 0; i++) {
+                boolean inWord = i < field.length() && Character.isLetterOrDigit(field.charAt(i));
+                if (inWord && start < 0) start = i;
+                if (inWord || start < 0) continue;
+                best = Math.min(best, distance(word, field, start, i, bound, prefix));
+                start = -1;
+            }
+            if (best > bound) return 0;
+            total += best;
+        }
+        return FUZZY - total * FUZZY_STEP;
+    }
+
+    // Short words have to be typed right; longer ones tolerate one or two edits
+    private static int bound(int length) {
+        return length < 3 ? 0 : length < 6 ? 1 : 2;
+    }
+
+    // Edit distance between `word` and field[start, end), or to its closest prefix when
+    // `prefix` is set; anything above `bound` is reported as bound + 1
+    private int distance(String word, String field, int start, int end, int bound, boolean prefix) {
+        int m = word.length();
+        int n = end - start;
+        if (n < m - bound || (!prefix && n > m + bound)) return bound + 1;
+        if (n + 1 > prev.length) {
+            prev = new int[n + 1];
+            cur = new int[n + 1];
+        }
+        for (int j = 0; j <= n; j++) prev[j] = j;
+        for (int i = 1; i <= m; i++) {
+            cur[0] = i;
+            int rowMin = i;
+            char c = word.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int cost = field.charAt(start + j - 1) == c ? 0 : 1;
+                int d = Math.min(prev[j - 1] + cost, Math.min(prev[j], cur[j - 1]) + 1);
+                cur[j] = d;
+                if (d < rowMin) rowMin = d;
+            }
+            if (rowMin > bound) return bound + 1;
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        int d = prev[n];
+        if (prefix) {
+            for (int j = 0; j < n; j++) d = Math.min(d, prev[j]);
+        }
+        return Math.min(d, bound + 1);
+    }
+
+    private static String[] words(String key) {
+        String[] parts = key.split("[^\\p{L}\\p{N}]+");
+        int n = 0;
+        for (String p : parts) {
+            if (!p.isEmpty()) parts[n++] = p;
+        }
+        return Arrays.copyOf(parts, n);
+    }
+
+    private static int[] unscored(int size) {
+        int[] scores = new int[size];
+        Arrays.fill(scores, -1);
+        return scores;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= v) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = v;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long v = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= v) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = v;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.mymediaplayer.library;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.Normalizer;
+
+// Search normalisation: accents stripped, case folded, runs of whitespace collapsed, so
+// "Beyoncé" and "BEYONCE" both become "beyonce". Track fields go through this once when they
+// enter the library and queries once per keystroke; matching is then a plain substring test.
+public final class SearchKeys {
+    private SearchKeys() {
+    }
+
+    @NonNull
+    public static String normalize(@Nullable String s) {
+        if (s == null || s.isEmpty()) return "";
+        // Fast path: plain lowercase ASCII with single spaces needs no work, which covers most tags
+        if (isNormalAscii(s)) return s;
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = true; // drops leading whitespace
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isWhitespace(c)) {
+                if (!space) out.append(' ');
+                space = true;
+                continue;
+            }
+            space = false;
+            appendFolded(out, c);
+        }
+        int len = out.length();
+        if (len > 0 && out.charAt(len - 1) == ' ') out.setLength(len - 1);
+        return out.toString();
+    }
+
+    // Letters with no canonical decomposition that people type without the accent anyway
+    private static void appendFolded(StringBuilder out, char c) {
+        switch (c) {
+            case 'ß': out.append("ss"); return;
+            case 'æ': case 'Æ': out.append("ae"); return;
+            case 'œ': case 'Œ': out.append("oe"); return;
+            case 'ø': case 'Ø': out.append('o'); return;
+            case 'ł': case 'Ł': out.append('l'); return;
+            case 'đ': case 'Đ': out.append('d'); return;
+            case 'ı': out.append('i'); return;
+            default:
+                out.append(Character.toLowerCase(c));
+        }
+    }
+
+    private static boolean isNormalAscii(String s) {
+        char prev = ' ';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) return false;
+            if (Character.isWhitespace(c) && (c != ' ' || prev == ' ')) return false;
+            prev = c;
+        }
+        return prev != ' ';
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.mymediaplayer.library;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Sections of a sorted list for a fast scroller: first letters for the title and artist sorts,
+// months for recently added. Built in one pass over the rows right after they are sorted, and
+// immutable after that. Jumping to a section is a direct array lookup.
+public final class SectionIndex {
+    public static final SectionIndex EMPTY = new SectionIndex(new String[0], new int[0]);
+
+    private final String[] labels;
+    private final int[] starts;
+
+    private SectionIndex(String[] labels, int[] starts) {
+        this.labels = labels;
+        this.starts = starts;
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    public String labelAt(int section) {
+        return labels[section];
+    }
+
+    public String[] labels() {
+        return labels.clone();
+    }
+
+    // First list position of `section`
+    public int positionFor(int section) {
+        return starts[section];
+    }
+
+    // Section containing list position `position`
+    public int sectionFor(int position) {
+        int i = Arrays.binarySearch(starts, position);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    // Sections of `view` as sorted by `mode` (a LibraryEngine.SORT_ constant); EMPTY for sorts
+    // without meaningful sections
+    static SectionIndex build(LibraryStore store, LibraryView view, int mode) {
+        if (view.size() == 0) return EMPTY;
+        switch (mode) {
+            case LibraryEngine.SORT_TITLE:
+            case LibraryEngine.SORT_ARTIST:
+                return byLetter(store, view, mode == LibraryEngine.SORT_ARTIST);
+            case LibraryEngine.SORT_RECENT:
+                return byMonth(store, view);
+            default:
+                return EMPTY;
+        }
+    }
+
+    private static SectionIndex byLetter(LibraryStore store, LibraryView view, boolean artist) {
+        Builder b = new Builder();
+        for (int i = 0; i < view.size(); i++) {
+            int row = view.rowAt(i);
+            String key = artist ? artistKey(store, row) : store.titleKeyAt(row);
+            b.add(i, letter(key));
+        }
+        return b.build();
+    }
+
+    private static String artistKey(LibraryStore store, int row) {
+        int code = store.artistCodeAt(row);
+        return code < 0 ? "" : store.artists().keyAt(code);
+    }
+
+    // Keys are already accent-stripped and lowercased; digits and symbols share "#"
+    private static String letter(String key) {
+        if (key.isEmpty() || !Character.isLetter(key.charAt(0))) return "#";
+        return String.valueOf(Character.toUpperCase(key.charAt(0)));
+    }
+
+    private static SectionIndex byMonth(LibraryStore store, LibraryView view) {
+        ZoneId zone = ZoneId.systemDefault();
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("MMM yyyy", Locale.getDefault());
+        Builder b = new Builder();
+        // Rows come in date order, so the month only has to be worked out when it changes
+        long monthStart = Long.MAX_VALUE;
+        long monthEnd = Long.MIN_VALUE;
+        String label = null;
+        for (int i = 0; i < view.size(); i++) {
+            long seconds = store.dateAddedAt(view.rowAt(i));
+            if (seconds < monthStart || seconds >= monthEnd) {
+                ZonedDateTime start = Instant.ofEpochSecond(seconds).atZone(zone).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+                monthStart = start.toEpochSecond();
+                monthEnd = start.plusMonths(1).toEpochSecond();
+                label = format.format(start);
+            }
+            b.add(i, label);
+        }
+        return b.build();
+    }
+
+    // A new section starts wherever the label changes
+    private static final class Builder {
+        private String[] labels = new String[32];
+        private int[] starts = new int[32];
+        private int count;
+
+        void add(int position, String label) {
+            if (count > 0 && labels[count - 1].equals(label)) return;
+            if (count == labels.length) {
+                labels = Arrays.copyOf(labels, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            labels[count] = label;
+            starts[count++] = position;
+        }
+
+        SectionIndex build() {
+            return new SectionIndex(Arrays.copyOf(labels, count), Arrays.copyOf(starts, count));
+        }
+    }
+}
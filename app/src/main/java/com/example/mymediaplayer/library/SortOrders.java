@@ -0,0 +1,156 @@
+package com.example.mymediaplayer.library;
+
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+// The whole library kept pre-sorted by title, artist and date added, so switching the sort or
+// sorting a filtered list is one pass over a stored permutation instead of a collator sort.
+//
+// Titles and artists are compared through CollationKey bytes, computed once per row (artists
+// once per dictionary value), which makes every comparison a plain byte compare. A permutation
+// is built the first time its sort is used and then kept up to date: single rows are inserted
+// in place, bulk loads just mark it for a rebuild, and tombstoned rows are skipped on read
+// until the next rebuild drops them. Ties go by row, so the order is total and stable.
+// Not thread-safe; use from the thread that owns the store.
+final class SortOrders {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final LibraryStore store;
+    private final Collator collator = Collator.getInstance(Locale.getDefault());
+    // Indexed by row and by artist code; null until first needed
+    private byte[][] titleKeys = new byte[0][];
+    private byte[][] artistKeys = new byte[0][];
+    private final Order title;
+    private final Order artist;
+    private final Order recent;
+    private final BitSet members = new BitSet();
+
+    private static final class Order {
+        final LibraryView.RowComparator comparator;
+        final LibraryView rows = new LibraryView();
+        boolean valid;
+
+        Order(LibraryView.RowComparator comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    SortOrders(LibraryStore store) {
+        this.store = store;
+        this.title = new Order((a, b) -> compareKeys(titleKey(a), titleKey(b), a, b));
+        this.artist = new Order((a, b) -> compareKeys(artistKey(a), artistKey(b), a, b));
+        this.recent = new Order((a, b) -> {
+            int c = Long.compare(store.dateAddedAt(b), store.dateAddedAt(a));
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+    }
+
+    // Comparator for `mode` (a LibraryEngine.SORT_ constant), or null if it has no stored order
+    LibraryView.RowComparator comparator(int mode) {
+        Order o = order(mode);
+        return o == null ? null : o.comparator;
+    }
+
+    // Reorders `view` by `mode`, which must have a comparator
+    void sort(int mode, LibraryView view) {
+        Order o = order(mode);
+        int n = view.size();
+        if (n < 2) return;
+        // A small subset is cheaper to sort directly than to find in the whole permutation
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(n)) < store.liveCount()) {
+            view.sort(o.comparator);
+            return;
+        }
+        ensureValid(o);
+        members.clear();
+        for (int i = 0; i < n; i++) members.set(view.rowAt(i));
+        view.clear();
+        for (int i = 0; i < o.rows.size(); i++) {
+            int row = o.rows.rowAt(i);
+            if (members.get(row)) view.add(row);
+        }
+    }
+
+    // After store.put of a single row
+    void added(int row) {
+        insert(title, row);
+        insert(artist, row);
+        insert(recent, row);
+    }
+
+    // After many puts (a chunk or a large delta); orders in use are rebuilt when next needed
+    void invalidate() {
+        title.valid = false;
+        artist.valid = false;
+        recent.valid = false;
+    }
+
+    // After store.clear(), which renumbers rows and artist codes
+    void clear() {
+        invalidate();
+        title.rows.clear();
+        artist.rows.clear();
+        recent.rows.clear();
+        titleKeys = new byte[0][];
+        artistKeys = new byte[0][];
+    }
+
+    private Order order(int mode) {
+        switch (mode) {
+            case LibraryEngine.SORT_TITLE: return title;
+            case LibraryEngine.SORT_ARTIST: return artist;
+            case LibraryEngine.SORT_RECENT: return recent;
+            default: return null;
+        }
+    }
+
+    private void insert(Order o, int row) {
+        if (!o.valid) return;
+        // Tombstones pile up through updates; rebuilding drops them
+        if (o.rows.size() > 2 * store.liveCount() + 64) {
+            o.valid = false;
+            return;
+        }
+        o.rows.insertSorted(row, o.comparator);
+    }
+
+    private void ensureValid(Order o) {
+        if (o.valid) return;
+        int[] live = store.liveRows();
+        o.rows.clear();
+        o.rows.addAll(live, live.length);
+        o.rows.sort(o.comparator);
+        o.valid = true;
+    }
+
+    private byte[] titleKey(int row) {
+        if (row >= titleKeys.length) titleKeys = Arrays.copyOf(titleKeys, Math.max(row + 1, titleKeys.length * 2));
+        byte[] key = titleKeys[row];
+        if (key == null) key = titleKeys[row] = collationKey(store.titleAt(row));
+        return key;
+    }
+
+    private byte[] artistKey(int row) {
+        int code = store.artistCodeAt(row);
+        if (code < 0) return EMPTY;
+        if (code >= artistKeys.length) artistKeys = Arrays.copyOf(artistKeys, Math.max(code + 1, artistKeys.length * 2));
+        byte[] key = artistKeys[code];
+        if (key == null) key = artistKeys[code] = collationKey(store.artistAt(row));
+        return key;
+    }
+
+    private byte[] collationKey(String s) {
+        return s == null ? EMPTY : collator.getCollationKey(s).toByteArray();
+    }
+
+    private static int compareKeys(byte[] x, byte[] y, int rowX, int rowY) {
+        int n = Math.min(x.length, y.length);
+        for (int i = 0; i < n; i++) {
+            if (x[i] != y[i]) return (x[i] & 0xff) - (y[i] & 0xff);
+        }
+        if (x.length != y.length) return x.length - y.length;
+        return Integer.compare(rowX, rowY);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.mymediaplayer.library;
+
+import java.util.Arrays;
+
+// Inverted index from character trigrams to the ids whose key contains them. Any key containing
+// a query contains all of the query's trigrams, so intersecting their posting lists gives a
+// small candidate set that only needs a final contains() check.
+//
+// Ids must be added in increasing order, which keeps every posting list sorted without extra
+// work; LibraryStore rows and dictionary codes are both append-only.
+final class TrigramIndex {
+    static final int N = 3;
+
+    private final LongIntHashMap listByTrigram = new LongIntHashMap(4096);
+    private int[][] postings = new int[256][];
+    private int[] lengths = new int[256];
+    private int listCount;
+
+    void add(int id, String key) {
+        for (int i = 0; i + N <= key.length(); i++) {
+            long t = trigram(key, i);
+            int list = listByTrigram.get(t);
+            if (list < 0) {
+                list = newList();
+                listByTrigram.put(t, list);
+            }
+            int len = lengths[list];
+            // A trigram repeated within one key is posted once
+            if (len > 0 && postings[list][len - 1] == id) continue;
+            if (len == postings[list].length) postings[list] = Arrays.copyOf(postings[list], len * 2);
+            postings[list][len] = id;
+            lengths[list] = len + 1;
+        }
+    }
+
+    // Sorted ids that have every trigram of `key` (a superset of the real matches), or null if
+    // the key is shorter than a trigram and can't be looked up
+    int[] candidates(String key) {
+        if (key.length() < N) return null;
+        int count = key.length() - N + 1;
+        int[] lists = new int[count];
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            int list = listByTrigram.get(trigram(key, i));
+            if (list < 0) return new int[0];
+            boolean seen = false;
+            for (int j = 0; j < distinct; j++) {
+                if (lists[j] == list) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) lists[distinct++] = list;
+        }
+        // Shortest list first bounds all later work by its length
+        for (int i = 1; i < distinct; i++) {
+            int l = lists[i];
+            int j = i - 1;
+            while (j >= 0 && lengths[lists[j]] > lengths[l]) {
+                lists[j + 1] = lists[j];
+                j--;
+            }
+            lists[j + 1] = l;
+        }
+        int[] result = Arrays.copyOf(postings[lists[0]], lengths[lists[0]]);
+        int size = result.length;
+        for (int i = 1; i < distinct && size > 0; i++) {
+            size = intersect(result, size, postings[lists[i]], lengths[lists[i]]);
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    void clear() {
+        listByTrigram.clear();
+        postings = new int[256][];
+        lengths = new int[256];
+        listCount = 0;
+    }
+
+    long estimateHeapBytes() {
+        long bytes = listByTrigram.estimateHeapBytes() + 16L + postings.length * 4L + 16L + lengths.length * 4L;
+        for (int i = 0; i < listCount; i++) bytes += 16L + postings[i].length * 4L;
+        return bytes;
+    }
+
+    // Keeps the elements of a[0, aLen) that are also in b; both sorted. Returns the new length.
+    // Gallops through b, since candidate sets are usually much shorter than later lists.
+    private static int intersect(int[] a, int aLen, int[] b, int bLen) {
+        int out = 0;
+        int lo = 0;
+        for (int i = 0; i < aLen && lo < bLen; i++) {
+            int v = a[i];
+            int step = 1;
+            int hi = lo;
+            while (hi < bLen && b[hi] < v) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int pos = Arrays.binarySearch(b, lo, Math.min(hi + 1, bLen), v);
+            if (pos >= 0) {
+                a[out++] = v;
+                lo = pos + 1;
+            } else {
+                lo = -pos - 1;
+            }
+        }
+        return out;
+    }
+
+    private int newList() {
+        if (listCount == postings.length) {
+            postings = Arrays.copyOf(postings, listCount * 2);
+            lengths = Arrays.copyOf(lengths, listCount * 2);
+        }
+        postings[listCount] = new int[4];
+        return listCount++;
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.mymediaplayer.playback;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+// A playable track as held by the library, the queue and playlists
+public class MediaItem {
+    public final long id;
+    public final String title;
+    public final String artist;
+    public final String album;
+    public final long dateAdded;
+    public final Uri contentUri;
+
+    public MediaItem(long id, String title, String artist, String album, long dateAdded, Uri contentUri) {
+        this.id = id;
+        this.title = title;
+        this.artist = artist;
+        this.album = album;
+        this.dateAdded = dateAdded;
+        this.contentUri = contentUri;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        if (artist != null && !artist.isEmpty()) return title + " — " + artist;
+        return title;
+    }
+}
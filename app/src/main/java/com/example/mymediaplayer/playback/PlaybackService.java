@@ -0,0 +1,469 @@
+package com.example.mymediaplayer.playback;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.graphics.drawable.Icon;
+import android.media.MediaMetadata;
+import android.media.session.MediaSession;
+import android.media.session.PlaybackState;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mymediaplayer.MainActivity;
+import com.example.mymediaplayer.R;
+import com.example.mymediaplayer.data.PlaylistItemEntity;
+import com.example.mymediaplayer.data.PlaylistRepository;
+import com.example.mymediaplayer.task.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Owns the player and the play queue so they outlive MainActivity. The activity starts and
+// binds to the service while visible and talks to it through LocalBinder; everything else
+// (notification, lock screen, headset buttons) goes through the MediaSession.
+public class PlaybackService extends Service {
+    private static final String TAG = "PlaybackService";
+    private static final String CHANNEL_ID = "playback";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String ACTION_TOGGLE = "com.example.mymediaplayer.action.TOGGLE";
+    private static final String ACTION_NEXT = "com.example.mymediaplayer.action.NEXT";
+    private static final String ACTION_PREVIOUS = "com.example.mymediaplayer.action.PREVIOUS";
+    private static final long SESSION_ACTIONS = PlaybackState.ACTION_PLAY | PlaybackState.ACTION_PAUSE
+            | PlaybackState.ACTION_PLAY_PAUSE | PlaybackState.ACTION_SEEK_TO | PlaybackState.ACTION_STOP
+            | PlaybackState.ACTION_SKIP_TO_NEXT | PlaybackState.ACTION_SKIP_TO_PREVIOUS;
+    // With no client bound and nothing playing the service stops itself after a grace period:
+    // short with nothing loaded, just long enough to survive a rotation, and longer while
+    // paused so the notification can still resume it
+    private static final long EMPTY_STOP_DELAY_MS = 5_000;
+    private static final long PAUSED_STOP_DELAY_MS = 10 * 60_000;
+
+    // Main thread callbacks for bound clients
+    public interface Listener {
+        void onTrackChanged(int durationMs);
+
+        void onPlayStateChanged(boolean playing);
+
+        void onPlaybackEnded();
+
+        void onError(@NonNull String message);
+    }
+
+    public class LocalBinder extends Binder {
+        @NonNull
+        public PlaybackService getService() {
+            return PlaybackService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final List<MediaItem> queue = new ArrayList<>();
+    private final List<MediaItem> queueView = Collections.unmodifiableList(queue);
+    private final QueuePlayer.Queue queueSource = new QueuePlayer.Queue() {
+        @Override public int size() { return queue.size(); }
+        @Override public Uri uriAt(int index) {
+            return index >= 0 && index < queue.size() ? queue.get(index).contentUri : null;
+        }
+    };
+
+    private QueuePlayer player;
+    private PlaylistRepository playlists;
+    // Pages of the playlist being appended to the queue; cancelled when anything else is played
+    private CancellationToken queueFill = new CancellationToken();
+    private MediaSession session;
+    private NotificationManager notificationManager;
+    private boolean foreground;
+    private boolean bound;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable stopIfIdle = () -> {
+        if (!bound && !isPlaying()) stopSelf();
+    };
+
+    private boolean playingFromQueue = false;
+    private int queueIndex = -1;
+    @Nullable
+    private String title;
+    @Nullable
+    private String artist;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        notificationManager = getSystemService(NotificationManager.class);
+        notificationManager.createNotificationChannel(new NotificationChannel(
+                CHANNEL_ID, getString(R.string.playback_channel), NotificationManager.IMPORTANCE_LOW));
+
+        playlists = new PlaylistRepository(this);
+        player = new QueuePlayer(this);
+        player.setListener(new QueuePlayer.Listener() {
+            @Override
+            public void onTrackChanged(int index, int durationMs) {
+                if (playingFromQueue) {
+                    queueIndex = index;
+                    if (index >= 0 && index < queue.size()) {
+                        title = queue.get(index).title;
+                        artist = queue.get(index).artist;
+                    }
+                }
+                updateSession();
+                for (Listener l : new ArrayList<>(listeners)) l.onTrackChanged(durationMs);
+            }
+
+            @Override
+            public void onPlaybackEnded() {
+                playingFromQueue = false;
+                queueIndex = -1;
+                updateSession();
+                scheduleIdleStop();
+                for (Listener l : new ArrayList<>(listeners)) l.onPlaybackEnded();
+            }
+
+            @Override
+            public void onError(@NonNull String message) {
+                for (Listener l : new ArrayList<>(listeners)) l.onError(message);
+            }
+        });
+
+        session = new MediaSession(this, TAG);
+        session.setCallback(new MediaSession.Callback() {
+            @Override public void onPlay() { play(); }
+            @Override public void onPause() { pause(); }
+            @Override public void onStop() { pause(); }
+            @Override public void onSkipToNext() { skipToNext(); }
+            @Override public void onSkipToPrevious() { skipToPrevious(); }
+            @Override public void onSeekTo(long pos) { seekTo((int) pos); }
+        });
+        session.setActive(true);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent == null ? null : intent.getAction();
+        if (ACTION_TOGGLE.equals(action)) {
+            if (isPlaying()) pause();
+            else play();
+        } else if (ACTION_NEXT.equals(action)) {
+            skipToNext();
+        } else if (ACTION_PREVIOUS.equals(action)) {
+            skipToPrevious();
+        }
+        scheduleIdleStop();
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        onClientBound();
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        onClientBound();
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        bound = false;
+        scheduleIdleStop();
+        // so the next client gets onRebind
+        return true;
+    }
+
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        super.onTaskRemoved(rootIntent);
+        if (!isPlaying()) stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacks(stopIfIdle);
+        queueFill.cancel();
+        listeners.clear();
+        player.release();
+        session.release();
+        stopForeground(STOP_FOREGROUND_REMOVE);
+        notificationManager.cancel(NOTIFICATION_ID);
+        super.onDestroy();
+    }
+
+    public void addListener(@NonNull Listener l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(@NonNull Listener l) {
+        listeners.remove(l);
+    }
+
+    // Leaves queue mode and plays a single track
+    public boolean playSingle(@NonNull Uri uri, @Nullable String title, @Nullable String artist, boolean start) {
+        queueFill.cancel();
+        playingFromQueue = false;
+        queueIndex = -1;
+        this.title = title;
+        this.artist = artist;
+        boolean ok = player.playSingle(uri, start);
+        updateSession();
+        return ok;
+    }
+
+    public boolean playQueue(@NonNull List<MediaItem> items, int index) {
+        queueFill.cancel();
+        queue.clear();
+        queue.addAll(items);
+        queueIndex = index;
+        playingFromQueue = true;
+        MediaItem first = index >= 0 && index < queue.size() ? queue.get(index) : null;
+        title = first == null ? null : first.title;
+        artist = first == null ? null : first.artist;
+        if (!player.play(queueSource, index, true)) {
+            playingFromQueue = false;
+            queueIndex = -1;
+            return false;
+        }
+        updateSession();
+        return true;
+    }
+
+    // Plays a playlist from its first page (as returned by PlaylistRepository.itemsAfter) and
+    // appends the rest to the queue a page at a time behind it. The paging belongs to the
+    // service so it carries on while no activity is bound.
+    public boolean playPlaylist(int playlistId, @NonNull List<PlaylistItemEntity> firstPage) {
+        if (!playQueue(toMediaItems(firstPage), 0)) return false;
+        CancellationToken fill = queueFill = new CancellationToken();
+        if (firstPage.size() == PlaylistRepository.PAGE_SIZE) fillQueue(playlistId, firstPage, fill);
+        return true;
+    }
+
+    private void fillQueue(int playlistId, @NonNull List<PlaylistItemEntity> previous, @NonNull CancellationToken fill) {
+        playlists.itemsAfter(playlistId, previous.get(previous.size() - 1), fill, page -> {
+            if (!playingFromQueue) return;
+            addAllToQueue(toMediaItems(page));
+            if (page.size() == PlaylistRepository.PAGE_SIZE) fillQueue(playlistId, page, fill);
+        });
+    }
+
+    private static List<MediaItem> toMediaItems(List<PlaylistItemEntity> items) {
+        List<MediaItem> list = new ArrayList<>(items.size());
+        long idx = 0;
+        for (PlaylistItemEntity e : items) {
+            list.add(new MediaItem(idx++, e.title, e.artist, e.album, e.dateAdded, Uri.parse(e.contentUri)));
+        }
+        return list;
+    }
+
+    // Read-only view; change it through addToQueue / removeFromQueue
+    @NonNull
+    public List<MediaItem> getQueue() {
+        return queueView;
+    }
+
+    public void addToQueue(@NonNull MediaItem item) {
+        queue.add(item);
+        if (playingFromQueue) player.onQueueChanged();
+    }
+
+    public void addAllToQueue(@NonNull List<MediaItem> items) {
+        queue.addAll(items);
+        if (playingFromQueue) player.onQueueChanged();
+    }
+
+    public void removeFromQueue(int position) {
+        if (position < 0 || position >= queue.size()) return;
+        queue.remove(position);
+        if (playingFromQueue) {
+            player.onQueueItemRemoved(position);
+            queueIndex = player.getCurrentIndex();
+        }
+    }
+
+    public boolean isPlayingFromQueue() {
+        return playingFromQueue;
+    }
+
+    public int getQueueIndex() {
+        return queueIndex;
+    }
+
+    public boolean canSkipNext() {
+        return playingFromQueue && queueIndex >= 0 && (queueIndex + 1) < queue.size();
+    }
+
+    public boolean canSkipPrev() {
+        return playingFromQueue && queueIndex > 0 && queueIndex < queue.size();
+    }
+
+    public void skipToNext() {
+        if (canSkipNext()) skipTo(queueIndex + 1);
+    }
+
+    public void skipToPrevious() {
+        if (canSkipPrev()) skipTo(queueIndex - 1);
+    }
+
+    private void skipTo(int index) {
+        if (!player.skipTo(index)) return;
+        // Reflect the new position right away; the player reports it again once prepared
+        queueIndex = index;
+        title = queue.get(index).title;
+        artist = queue.get(index).artist;
+        updateSession();
+    }
+
+    public void play() {
+        if (!player.hasTrack()) return;
+        player.start();
+        onPlayStateChanged();
+    }
+
+    public void pause() {
+        player.pause();
+        onPlayStateChanged();
+    }
+
+    public boolean isPlaying() {
+        return player.isPlaying();
+    }
+
+    public boolean hasTrack() {
+        return player.hasTrack();
+    }
+
+    @Nullable
+    public String getTitle() {
+        return title;
+    }
+
+    public int getCurrentPosition() {
+        return player.getCurrentPosition();
+    }
+
+    public int getDuration() {
+        return player.getDuration();
+    }
+
+    public void seekTo(int ms) {
+        player.seekTo(ms);
+        updateSession();
+    }
+
+    public float getSpeed() {
+        return player.getSpeed();
+    }
+
+    // Throws if the device does not support changing the speed
+    public void setSpeed(float speed) {
+        player.setSpeed(speed);
+        updateSession();
+    }
+
+    @NonNull
+    public QueuePlayer getPlayer() {
+        return player;
+    }
+
+    private void onPlayStateChanged() {
+        updateSession();
+        boolean playing = isPlaying();
+        for (Listener l : new ArrayList<>(listeners)) l.onPlayStateChanged(playing);
+        scheduleIdleStop();
+    }
+
+    private void onClientBound() {
+        bound = true;
+        handler.removeCallbacks(stopIfIdle);
+    }
+
+    private void scheduleIdleStop() {
+        handler.removeCallbacks(stopIfIdle);
+        if (bound || isPlaying()) return;
+        handler.postDelayed(stopIfIdle, player.hasTrack() ? PAUSED_STOP_DELAY_MS : EMPTY_STOP_DELAY_MS);
+    }
+
+    private void updateSession() {
+        boolean playing = isPlaying();
+        int state = playing ? PlaybackState.STATE_PLAYING
+                : player.hasTrack() ? PlaybackState.STATE_PAUSED : PlaybackState.STATE_STOPPED;
+        session.setPlaybackState(new PlaybackState.Builder()
+                .setActions(SESSION_ACTIONS)
+                .setState(state, player.getCurrentPosition(), playing ? player.getSpeed() : 0f)
+                .build());
+        session.setMetadata(new MediaMetadata.Builder()
+                .putString(MediaMetadata.METADATA_KEY_TITLE, title == null ? "Track" : title)
+                .putString(MediaMetadata.METADATA_KEY_ARTIST, artist)
+                .putLong(MediaMetadata.METADATA_KEY_DURATION, player.getDuration())
+                .build());
+        updateNotification(playing);
+    }
+
+    private void updateNotification(boolean playing) {
+        if (!player.hasTrack()) {
+            stopForeground(STOP_FOREGROUND_REMOVE);
+            foreground = false;
+            return;
+        }
+        Notification notification = buildNotification(playing);
+        if (playing) {
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PLAYBACK);
+                } else {
+                    startForeground(NOTIFICATION_ID, notification);
+                }
+                foreground = true;
+            } catch (IllegalStateException e) {
+                // Not allowed from the background on newer releases; keep playing without it
+                Log.w(TAG, "Could not enter foreground", e);
+                notificationManager.notify(NOTIFICATION_ID, notification);
+            }
+        } else {
+            if (foreground) {
+                stopForeground(STOP_FOREGROUND_DETACH);
+                foreground = false;
+            }
+            notificationManager.notify(NOTIFICATION_ID, notification);
+        }
+    }
+
+    private Notification buildNotification(boolean playing) {
+        Intent open = new Intent(this, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, open, PendingIntent.FLAG_IMMUTABLE);
+        return new Notification.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_stat_playback)
+                .setContentTitle(title == null ? "Track" : title)
+                .setContentText(artist)
+                .setContentIntent(contentIntent)
+                .setOngoing(playing)
+                .setVisibility(Notification.VISIBILITY_PUBLIC)
+                .addAction(action(android.R.drawable.ic_media_previous, R.string.previous_track, ACTION_PREVIOUS))
+                .addAction(action(playing ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play,
+                        R.string.play_pause, ACTION_TOGGLE))
+                .addAction(action(android.R.drawable.ic_media_next, R.string.next_track, ACTION_NEXT))
+                .setStyle(new Notification.MediaStyle()
+                        .setMediaSession(session.getSessionToken())
+                        .setShowActionsInCompactView(0, 1, 2))
+                .build();
+    }
+
+    private Notification.Action action(int icon, int label, String action) {
+        Intent intent = new Intent(this, PlaybackService.class).setAction(action);
+        PendingIntent pi = PendingIntent.getService(this, action.hashCode(), intent, PendingIntent.FLAG_IMMUTABLE);
+        return new Notification.Action.Builder(Icon.createWithResource(this, icon), getString(label), pi).build();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.mymediaplayer.playback;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+// Prepares MediaPlayers without touching the main thread: setDataSource (which opens and may
+// block on slow document providers) runs on a dedicated playback thread, followed by
+// prepareAsync. Players are created on the main thread so their callbacks arrive there.
+public class PlayerPreparer {
+    private static final String TAG = "PlayerPreparer";
+
+    public interface Callback {
+        // Main thread. The receiver owns the player from here on.
+        void onPrepared(@NonNull MediaPlayer player);
+
+        // Main thread
+        void onFailed(@NonNull String message);
+    }
+
+    // A pending prepare; cancel() releases the player if it has not been handed over yet
+    public final class Request {
+        private final MediaPlayer player;
+        private final String scheme;
+        private final long startedAt = SystemClock.elapsedRealtime();
+        // Written on the main thread and read on the prepare thread as well
+        private volatile boolean finished;
+        private volatile boolean cancelled;
+
+        private Request(MediaPlayer player, String scheme) {
+            this.player = player;
+            this.scheme = scheme;
+        }
+
+        // Main thread
+        public void cancel() {
+            if (finished || cancelled) return;
+            cancelled = true;
+            stats.recordCancelled(scheme);
+            release(player);
+        }
+    }
+
+    private final Context context;
+    private final HandlerThread thread;
+    private final Handler worker;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final PrepareStats stats = new PrepareStats();
+
+    public PlayerPreparer(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+        thread = new HandlerThread("playback-prepare");
+        thread.start();
+        worker = new Handler(thread.getLooper());
+    }
+
+    // Main thread
+    @NonNull
+    public Request prepare(@NonNull Uri uri, @NonNull Callback callback) {
+        MediaPlayer mp = new MediaPlayer();
+        String scheme = uri.getScheme() == null ? "none" : uri.getScheme();
+        Request request = new Request(mp, scheme);
+        mp.setOnPreparedListener(p -> {
+            if (request.cancelled) return;
+            request.finished = true;
+            long latency = SystemClock.elapsedRealtime() - request.startedAt;
+            stats.recordPrepared(scheme, latency);
+            Log.d(TAG, "Prepared " + scheme + " in " + latency + "ms; " + stats);
+            p.setOnPreparedListener(null);
+            p.setOnErrorListener(null);
+            callback.onPrepared(p);
+        });
+        mp.setOnErrorListener((p, what, extra) -> {
+            fail(request, callback, "Failed to load audio (" + what + ", " + extra + ")");
+            return true;
+        });
+        worker.post(() -> {
+            // cancel() queues the release behind this task, so the player is still alive here
+            if (request.cancelled) return;
+            try {
+                mp.setDataSource(context, uri);
+                mp.prepareAsync();
+            } catch (Exception e) {
+                Log.w(TAG, "Could not open " + uri, e);
+                main.post(() -> fail(request, callback, "Failed to load audio"));
+            }
+        });
+        return request;
+    }
+
+    // Stops and releases a player on the playback thread; the caller must drop its reference
+    public void release(@NonNull MediaPlayer player) {
+        worker.post(() -> {
+            try {
+                if (player.isPlaying()) player.stop();
+            } catch (Exception ignored) {}
+            try { player.release(); } catch (Exception ignored) {}
+        });
+    }
+
+    @NonNull
+    public PrepareStats getStats() {
+        return stats;
+    }
+
+    public void shutdown() {
+        thread.quitSafely();
+    }
+
+    private void fail(Request request, Callback callback, String message) {
+        if (request.cancelled || request.finished) return;
+        request.finished = true;
+        stats.recordFailed(request.scheme);
+        release(request.player);
+        callback.onFailed(message);
+    }
+}
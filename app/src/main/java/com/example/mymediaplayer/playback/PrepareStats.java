@@ -0,0 +1,79 @@
+package com.example.mymediaplayer.playback;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Prepare latency grouped by URI scheme (content, file, android.resource, ...)
+public class PrepareStats {
+
+    public static class Entry {
+        public int count;
+        public int cancelled;
+        public int failed;
+        public long totalMs;
+        public long maxMs;
+
+        public double averageMs() {
+            return count == 0 ? 0 : (double) totalMs / count;
+        }
+    }
+
+    private final Map<String, Entry> byScheme = new TreeMap<>();
+
+    synchronized void recordPrepared(@NonNull String scheme, long latencyMs) {
+        Entry e = entry(scheme);
+        e.count++;
+        e.totalMs += latencyMs;
+        e.maxMs = Math.max(e.maxMs, latencyMs);
+    }
+
+    synchronized void recordCancelled(@NonNull String scheme) {
+        entry(scheme).cancelled++;
+    }
+
+    synchronized void recordFailed(@NonNull String scheme) {
+        entry(scheme).failed++;
+    }
+
+    // Copy of the current figures, keyed by scheme
+    @NonNull
+    public synchronized Map<String, Entry> snapshot() {
+        Map<String, Entry> copy = new TreeMap<>();
+        for (Map.Entry<String, Entry> e : byScheme.entrySet()) {
+            Entry src = e.getValue();
+            Entry dst = new Entry();
+            dst.count = src.count;
+            dst.cancelled = src.cancelled;
+            dst.failed = src.failed;
+            dst.totalMs = src.totalMs;
+            dst.maxMs = src.maxMs;
+            copy.put(e.getKey(), dst);
+        }
+        return copy;
+    }
+
+    private Entry entry(String scheme) {
+        Entry e = byScheme.get(scheme);
+        if (e == null) {
+            e = new Entry();
+            byScheme.put(scheme, e);
+        }
+        return e;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Entry> e : byScheme.entrySet()) {
+            Entry v = e.getValue();
+            if (sb.length() > 0) sb.append("; ");
+            sb.append(String.format(Locale.US, "%s: n=%d avg=%.1fms max=%dms cancelled=%d failed=%d",
+                    e.getKey(), v.count, v.averageMs(), v.maxMs, v.cancelled, v.failed));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.mymediaplayer.playback;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+// Drives the position UI. It only runs while the UI is visible and the track is playing, and
+// each tick is scheduled for just after the next whole second of media time, so every tick
+// changes the displayed time and nothing wakes up in between.
+public class ProgressTicker {
+    // Land slightly past the boundary so the position read is already in the new second
+    private static final long BOUNDARY_SLACK_MS = 15;
+
+    public interface Source {
+        boolean isPlaying();
+
+        int getPosition();
+
+        float getSpeed();
+    }
+
+    public interface Sink {
+        void onProgress(int positionMs);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Source source;
+    private final Sink sink;
+    private final Runnable tick = this::tick;
+    private boolean visible;
+
+    public ProgressTicker(@NonNull Source source, @NonNull Sink sink) {
+        this.source = source;
+        this.sink = sink;
+    }
+
+    // Call from onStart / onStop
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (visible) update();
+        else handler.removeCallbacks(tick);
+    }
+
+    // Call whenever the play state, track or position changes; pushes one update right away
+    // and (re)schedules ticking if it should run
+    public void update() {
+        handler.removeCallbacks(tick);
+        if (visible) tick();
+    }
+
+    public void stop() {
+        handler.removeCallbacks(tick);
+    }
+
+    private void tick() {
+        int pos = source.getPosition();
+        sink.onProgress(pos);
+        if (!visible || !source.isPlaying()) return;
+        float speed = source.getSpeed();
+        if (speed <= 0f) speed = 1f;
+        long delay = (long) ((1000 - pos % 1000) / speed) + BOUNDARY_SLACK_MS;
+        handler.postDelayed(tick, delay);
+    }
+}
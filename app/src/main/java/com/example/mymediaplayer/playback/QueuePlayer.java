@@ -0,0 +1,367 @@
+package com.example.mymediaplayer.playback;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.media.MediaTimestamp;
+import android.media.PlaybackParams;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+// Plays a queue of tracks. While one track plays, the following one is prepared in the
+// background and chained with setNextMediaPlayer, so a track boundary needs no release/create
+// on the main thread. A single track is just a queue of one. All preparing goes through
+// PlayerPreparer; methods must be called on the main thread.
+public class QueuePlayer {
+    private static final String TAG = "QueuePlayer";
+    // Wait before reading a new track's audio clock; the timestamp is not valid right at start
+    private static final long TIMESTAMP_SAMPLE_DELAY_MS = 250;
+
+    public interface Queue {
+        int size();
+
+        @Nullable
+        Uri uriAt(int index);
+    }
+
+    public interface Listener {
+        // A track became current and is prepared, either by play/skip or by advancing at the end
+        // of the previous one
+        void onTrackChanged(int index, int durationMs);
+
+        // The last track of the queue finished playing
+        void onPlaybackEnded();
+
+        void onError(@NonNull String message);
+    }
+
+    private final PlayerPreparer preparer;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final TransitionStats transitionStats = new TransitionStats();
+    @Nullable
+    private Listener listener;
+
+    @Nullable
+    private Queue queue;
+    @Nullable
+    private MediaPlayer current;
+    private int currentIndex = -1;
+    // Set while the track at currentIndex is still preparing
+    @Nullable
+    private PlayerPreparer.Request pendingCurrent;
+    private boolean startWhenPrepared;
+
+    // The following track; `next` is set once nextRequest has prepared
+    @Nullable
+    private PlayerPreparer.Request nextRequest;
+    @Nullable
+    private MediaPlayer next;
+    private int nextIndex = -1;
+    @Nullable
+    private Uri nextUri;
+    private boolean nextChained;
+    // The current track ended before `next` was ready; start it as soon as it is
+    private boolean startNextWhenPrepared;
+    private long completedAtNanos;
+
+    private float speed = 1f;
+
+    public QueuePlayer(@NonNull Context context) {
+        this.preparer = new PlayerPreparer(context);
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    // Returns false if there is nothing to play at `index`; load failures arrive via onError
+    public boolean playSingle(@NonNull Uri uri, boolean start) {
+        return play(new Queue() {
+            @Override public int size() { return 1; }
+            @Override public Uri uriAt(int index) { return index == 0 ? uri : null; }
+        }, 0, start);
+    }
+
+    public boolean play(@NonNull Queue queue, int index, boolean start) {
+        this.queue = queue;
+        return openAt(index, start);
+    }
+
+    public boolean skipTo(int index) {
+        if (queue == null || index < 0 || index >= queue.size()) return false;
+        return openAt(index, true);
+    }
+
+    // Call after the queue was appended to or reordered so the pre-prepared track stays correct
+    public void onQueueChanged() {
+        if (queue == null || current == null) return;
+        int index = currentIndex + 1;
+        Uri wanted = index < queue.size() ? queue.uriAt(index) : null;
+        if ((next != null || nextRequest != null) && wanted != null && wanted.equals(nextUri)) {
+            nextIndex = index;
+            return;
+        }
+        releaseNext();
+        prepareNext();
+    }
+
+    // Call after removing `position` from the queue
+    public void onQueueItemRemoved(int position) {
+        // Removing the playing track keeps it playing; the track that slid into its slot plays next
+        if (position <= currentIndex) currentIndex--;
+        onQueueChanged();
+    }
+
+    public void start() {
+        if (pendingCurrent != null) {
+            startWhenPrepared = true;
+            return;
+        }
+        if (current == null) return;
+        current.start();
+        applySpeedQuietly(current);
+    }
+
+    public void pause() {
+        startWhenPrepared = false;
+        if (current != null) current.pause();
+    }
+
+    // True while playing, or while preparing a track that will start once ready
+    public boolean isPlaying() {
+        if (pendingCurrent != null) return startWhenPrepared;
+        try {
+            return current != null && current.isPlaying();
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    public boolean hasTrack() {
+        return current != null || pendingCurrent != null;
+    }
+
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    public int getCurrentPosition() {
+        return current == null ? 0 : current.getCurrentPosition();
+    }
+
+    public int getDuration() {
+        return current == null ? 0 : current.getDuration();
+    }
+
+    public void seekTo(int ms) {
+        if (current != null) current.seekTo(ms);
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    // Throws if the device does not support changing the speed
+    public void setSpeed(float speed) {
+        this.speed = speed;
+        if (current != null && current.isPlaying()) {
+            PlaybackParams params = current.getPlaybackParams();
+            params.setSpeed(speed);
+            current.setPlaybackParams(params);
+        }
+    }
+
+    @NonNull
+    public TransitionStats getTransitionStats() {
+        return transitionStats;
+    }
+
+    @NonNull
+    public PrepareStats getPrepareStats() {
+        return preparer.getStats();
+    }
+
+    // The player cannot be used again afterwards
+    public void release() {
+        handler.removeCallbacksAndMessages(null);
+        releaseNext();
+        releaseCurrent();
+        queue = null;
+        preparer.shutdown();
+    }
+
+    private boolean openAt(int index, boolean start) {
+        releaseNext();
+        releaseCurrent();
+        Uri uri = queue == null ? null : queue.uriAt(index);
+        if (uri == null) return false;
+        currentIndex = index;
+        startWhenPrepared = start;
+        // Replaces (and so cancels) any prepare still running for a previously requested track
+        pendingCurrent = preparer.prepare(uri, new PlayerPreparer.Callback() {
+            @Override
+            public void onPrepared(@NonNull MediaPlayer player) {
+                pendingCurrent = null;
+                current = player;
+                attachCurrentListeners(player);
+                if (startWhenPrepared) start();
+                if (listener != null) listener.onTrackChanged(currentIndex, player.getDuration());
+                prepareNext();
+            }
+
+            @Override
+            public void onFailed(@NonNull String message) {
+                pendingCurrent = null;
+                currentIndex = -1;
+                if (listener != null) listener.onError(message);
+            }
+        });
+        return true;
+    }
+
+    private void prepareNext() {
+        int index = currentIndex + 1;
+        Uri uri = (queue != null && index < queue.size()) ? queue.uriAt(index) : null;
+        if (uri == null) return;
+        nextIndex = index;
+        nextUri = uri;
+        nextRequest = preparer.prepare(uri, new PlayerPreparer.Callback() {
+            @Override
+            public void onPrepared(@NonNull MediaPlayer player) {
+                nextRequest = null;
+                onNextPrepared(player);
+            }
+
+            @Override
+            public void onFailed(@NonNull String message) {
+                Log.w(TAG, "Next track failed to prepare: " + nextUri + ": " + message);
+                nextRequest = null;
+                boolean waiting = startNextWhenPrepared;
+                releaseNext();
+                if (waiting && listener != null) listener.onPlaybackEnded();
+            }
+        });
+    }
+
+    private void onNextPrepared(MediaPlayer mp) {
+        next = mp;
+        if (startNextWhenPrepared) {
+            // Too late to chain; the current track already ended
+            promoteNext(false);
+            return;
+        }
+        if (current != null) {
+            try {
+                current.setNextMediaPlayer(mp);
+                nextChained = true;
+            } catch (Exception e) {
+                Log.w(TAG, "setNextMediaPlayer failed, falling back to start on completion", e);
+            }
+        }
+    }
+
+    private void attachCurrentListeners(@NonNull MediaPlayer mp) {
+        mp.setOnCompletionListener(this::onCurrentCompleted);
+        mp.setOnErrorListener((p, what, extra) -> {
+            if (p == current && listener != null) listener.onError("Playback error (" + what + ", " + extra + ")");
+            // false: treat the error as a completion so the queue moves on
+            return false;
+        });
+    }
+
+    private void onCurrentCompleted(MediaPlayer mp) {
+        if (mp != current) return;
+        completedAtNanos = System.nanoTime();
+        if (next != null) {
+            // With a chained player the framework already started it
+            promoteNext(nextChained);
+        } else if (nextRequest != null) {
+            startNextWhenPrepared = true;
+        } else if (listener != null) {
+            listener.onPlaybackEnded();
+        }
+    }
+
+    private void promoteNext(boolean alreadyStarted) {
+        MediaPlayer old = current;
+        MediaPlayer mp = next;
+        if (mp == null) return;
+        current = mp;
+        currentIndex = nextIndex;
+        next = null;
+        nextIndex = -1;
+        nextUri = null;
+        nextChained = false;
+        startNextWhenPrepared = false;
+        if (old != null) preparer.release(old);
+        attachCurrentListeners(mp);
+        if (alreadyStarted) applySpeedQuietly(mp);
+        else start();
+        sampleTransitionGap(mp, completedAtNanos, alreadyStarted);
+        if (listener != null) listener.onTrackChanged(currentIndex, mp.getDuration());
+        prepareNext();
+    }
+
+    // The gap is the time from the previous track's end of stream to the instant that the new
+    // track's audio clock says its first frame was played.
+    private void sampleTransitionGap(@NonNull MediaPlayer mp, long completedAt, boolean chained) {
+        long fallbackStartNanos = System.nanoTime();
+        handler.postDelayed(() -> {
+            if (mp != current) return;
+            long firstFrameNanos = fallbackStartNanos;
+            try {
+                MediaTimestamp ts = mp.getTimestamp();
+                if (ts != null && ts.getMediaClockRate() > 0f) {
+                    firstFrameNanos = ts.getAnchorSystemNanoTime()
+                            - (long) (ts.getAnchorMediaTimeUs() * 1000L / ts.getMediaClockRate());
+                }
+            } catch (IllegalStateException ignored) {}
+            long gapMs = Math.max(0, (firstFrameNanos - completedAt) / 1_000_000L);
+            transitionStats.record(gapMs, chained);
+            Log.d(TAG, "Track " + currentIndex + " gap " + gapMs + "ms; " + transitionStats);
+        }, TIMESTAMP_SAMPLE_DELAY_MS);
+    }
+
+    private void applySpeedQuietly(@NonNull MediaPlayer mp) {
+        if (speed == 1f) return;
+        try {
+            PlaybackParams params = mp.getPlaybackParams();
+            params.setSpeed(speed);
+            mp.setPlaybackParams(params);
+        } catch (Exception ignored) {}
+    }
+
+    private void releaseNext() {
+        startNextWhenPrepared = false;
+        if (nextRequest != null) {
+            nextRequest.cancel();
+            nextRequest = null;
+        }
+        if (next != null) {
+            if (nextChained && current != null) {
+                try { current.setNextMediaPlayer(null); } catch (Exception ignored) {}
+            }
+            preparer.release(next);
+            next = null;
+        }
+        nextIndex = -1;
+        nextUri = null;
+        nextChained = false;
+    }
+
+    private void releaseCurrent() {
+        if (pendingCurrent != null) {
+            pendingCurrent.cancel();
+            pendingCurrent = null;
+        }
+        if (current != null) {
+            preparer.release(current);
+            current = null;
+        }
+        currentIndex = -1;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.mymediaplayer.playback;
+
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+
+// Formats milliseconds as "m:ss" into a caller-owned char buffer, so steady-state UI updates
+// allocate nothing. TextView.setText(char[], int, int) keeps a reference to the array, so give
+// each TextView its own formatter.
+public class TimeFormatter {
+    // Enough for "35791:23", the longest an int of milliseconds can produce
+    private final char[] buffer = new char[12];
+    private int lastSeconds = -1;
+
+    // Writes `ms` into the buffer; returns the number of chars used
+    public int format(int ms) {
+        int totalSeconds = Math.max(ms, 0) / 1000;
+        int minutes = totalSeconds / 60;
+        int seconds = totalSeconds % 60;
+        int len = 0;
+        if (minutes == 0) {
+            buffer[len++] = '0';
+        } else {
+            int start = len;
+            while (minutes > 0) {
+                buffer[len++] = (char) ('0' + minutes % 10);
+                minutes /= 10;
+            }
+            for (int i = start, j = len - 1; i < j; i++, j--) {
+                char t = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = t;
+            }
+        }
+        buffer[len++] = ':';
+        buffer[len++] = (char) ('0' + seconds / 10);
+        buffer[len++] = (char) ('0' + seconds % 10);
+        return len;
+    }
+
+    // The text format() produces, as a String
+    String text(int ms) {
+        return new String(buffer, 0, format(ms));
+    }
+
+    // Updates the view only when the displayed second changes
+    public void show(@NonNull TextView view, int ms) {
+        int seconds = Math.max(ms, 0) / 1000;
+        if (seconds == lastSeconds) return;
+        lastSeconds = seconds;
+        view.setText(buffer, 0, format(ms));
+    }
+
+    // Forces the next show() to redraw, e.g. after the view was given other text
+    public void invalidate() {
+        lastSeconds = -1;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.mymediaplayer.playback;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+// Running statistics over the measured silence between consecutive queue tracks
+public class TransitionStats {
+    private int count;
+    // transitions handed over through setNextMediaPlayer rather than a late start()
+    private int chainedCount;
+    private long lastGapMs = -1;
+    private long maxGapMs;
+    private long totalGapMs;
+
+    void record(long gapMs, boolean chained) {
+        count++;
+        if (chained) chainedCount++;
+        lastGapMs = gapMs;
+        maxGapMs = Math.max(maxGapMs, gapMs);
+        totalGapMs += gapMs;
+    }
+
+    public void reset() {
+        count = 0;
+        chainedCount = 0;
+        lastGapMs = -1;
+        maxGapMs = 0;
+        totalGapMs = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getChainedCount() {
+        return chainedCount;
+    }
+
+    // -1 until the first transition has been measured
+    public long getLastGapMs() {
+        return lastGapMs;
+    }
+
+    public long getMaxGapMs() {
+        return maxGapMs;
+    }
+
+    public double getAverageGapMs() {
+        return count == 0 ? 0 : (double) totalGapMs / count;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "transitions=%d chained=%d last=%dms avg=%.1fms max=%dms",
+                count, chainedCount, lastGapMs, getAverageGapMs(), maxGapMs);
+    }
+}
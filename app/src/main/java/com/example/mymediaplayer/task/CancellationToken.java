@@ -0,0 +1,51 @@
+package com.example.mymediaplayer.task;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// Cooperative cancellation. Work checks isCancelled() / throwIfCancelled() between steps, and
+// results of cancelled work are never delivered. One token can cover many tasks, e.g. everything
+// an activity started.
+public class CancellationToken {
+    private volatile boolean cancelled;
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException();
+    }
+
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (listeners) {
+            if (cancelled) return;
+            cancelled = true;
+            toRun = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        for (Runnable r : toRun) r.run();
+    }
+
+    // Runs `listener` on cancellation, or right away if already cancelled
+    void addListener(@NonNull Runnable listener) {
+        synchronized (listeners) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    void removeListener(@NonNull Runnable listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.mymediaplayer.task;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// App-wide background work. Disk/content-provider I/O, database access and CPU-bound work each
+// get their own bounded pool, so a long MediaStore scan can't starve playlist queries and
+// neither can oversubscribe the CPU. Results are delivered on the main thread unless the
+// caller's token was cancelled in the meantime.
+public class TaskScheduler {
+    private static final String TAG = "TaskScheduler";
+    private static volatile TaskScheduler INSTANCE;
+
+    public interface Task<T> {
+        // Worker thread. Long tasks should check the token between steps.
+        T run(@NonNull CancellationToken token) throws Exception;
+    }
+
+    public interface Callback<T> {
+        // Main thread
+        void onResult(T result);
+    }
+
+    public interface ErrorCallback {
+        // Main thread; not called for cancellation
+        void onError(@NonNull Exception e);
+    }
+
+    private final ThreadPoolExecutor io = newPool("io", 4);
+    private final ThreadPoolExecutor db = newPool("db", 2);
+    private final ThreadPoolExecutor cpu = newPool("cpu", Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+    private final Handler main = new Handler(Looper.getMainLooper());
+    // Keyed jobs that are queued but not yet running
+    private final Map<String, Job<?>> pending = new HashMap<>();
+
+    public static TaskScheduler getInstance() {
+        if (INSTANCE == null) {
+            synchronized (TaskScheduler.class) {
+                if (INSTANCE == null) INSTANCE = new TaskScheduler();
+            }
+        }
+        return INSTANCE;
+    }
+
+    private TaskScheduler() {
+    }
+
+    @NonNull
+    public Executor io() {
+        return io;
+    }
+
+    @NonNull
+    public Executor db() {
+        return db;
+    }
+
+    @NonNull
+    public Executor cpu() {
+        return cpu;
+    }
+
+    // An executor that runs its tasks one at a time, in order, on `pool`
+    @NonNull
+    public Executor serial(@NonNull Executor pool) {
+        return new SerialExecutor(pool);
+    }
+
+    public <T> void submit(@NonNull Executor executor, @NonNull CancellationToken token,
+                           @NonNull Task<T> task, @Nullable Callback<T> onResult) {
+        submit(executor, null, token, task, onResult, null);
+    }
+
+    // A job submitted with the `key` of one that is still queued joins it instead of running
+    // again: the task runs once and every caller gets the result. Once a job has started, the
+    // same key queues a fresh run, since whatever prompted it may not be covered by the one
+    // in progress. The job itself is cancelled once all of its callers have cancelled.
+    public <T> void submit(@NonNull Executor executor, @Nullable String key, @NonNull CancellationToken token,
+                           @NonNull Task<T> task, @Nullable Callback<T> onResult, @Nullable ErrorCallback onError) {
+        if (token.isCancelled()) return;
+        Job<T> job;
+        synchronized (pending) {
+            @SuppressWarnings("unchecked")
+            Job<T> existing = key == null ? null : (Job<T>) pending.get(key);
+            if (existing != null && existing.subscribe(token, onResult, onError)) return;
+            job = new Job<>(key, task);
+            job.subscribe(token, onResult, onError);
+            if (key != null) pending.put(key, job);
+        }
+        executor.execute(job);
+    }
+
+    // Posts to the main thread unless `token` is cancelled by the time it runs
+    public void post(@NonNull CancellationToken token, @NonNull Runnable r) {
+        main.post(() -> {
+            if (!token.isCancelled()) r.run();
+        });
+    }
+
+    private final class Job<T> implements Runnable {
+        private final String key;
+        private final Task<T> task;
+        private final CancellationToken jobToken = new CancellationToken();
+        private final List<Subscriber<T>> subscribers = new ArrayList<>();
+        private boolean started;
+
+        Job(@Nullable String key, @NonNull Task<T> task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        // Called with `pending` held; false if the job has already started
+        boolean subscribe(CancellationToken token, @Nullable Callback<T> onResult, @Nullable ErrorCallback onError) {
+            if (started) return false;
+            Subscriber<T> sub = new Subscriber<>(token, onResult, onError);
+            sub.onCancel = () -> unsubscribe(sub);
+            subscribers.add(sub);
+            token.addListener(sub.onCancel);
+            return true;
+        }
+
+        private void unsubscribe(Subscriber<T> sub) {
+            synchronized (pending) {
+                if (!subscribers.remove(sub) || !subscribers.isEmpty()) return;
+                if (key != null && pending.get(key) == this) pending.remove(key);
+            }
+            jobToken.cancel();
+        }
+
+        @Override
+        public void run() {
+            synchronized (pending) {
+                started = true;
+                if (key != null && pending.get(key) == this) pending.remove(key);
+            }
+            if (jobToken.isCancelled()) return;
+            T result = null;
+            Exception error = null;
+            try {
+                result = task.run(jobToken);
+            } catch (Exception e) {
+                error = e;
+            }
+            if (jobToken.isCancelled() || error instanceof CancellationException) {
+                detachAll();
+                return;
+            }
+            T r = result;
+            Exception err = error;
+            main.post(() -> deliver(r, err));
+        }
+
+        private void deliver(T result, @Nullable Exception error) {
+            List<Subscriber<T>> subs;
+            synchronized (pending) {
+                subs = new ArrayList<>(subscribers);
+            }
+            detachAll();
+            boolean reported = false;
+            for (Subscriber<T> sub : subs) {
+                if (sub.token.isCancelled()) continue;
+                if (error == null) {
+                    if (sub.onResult != null) sub.onResult.onResult(result);
+                } else if (sub.onError != null) {
+                    sub.onError.onError(error);
+                    reported = true;
+                }
+            }
+            if (error != null && !reported) Log.w(TAG, "Background task failed", error);
+        }
+
+        // Drop our listeners so long-lived tokens don't accumulate them
+        private void detachAll() {
+            synchronized (pending) {
+                for (Subscriber<T> sub : subscribers) sub.token.removeListener(sub.onCancel);
+                subscribers.clear();
+            }
+        }
+    }
+
+    private static final class Subscriber<T> {
+        final CancellationToken token;
+        final Callback<T> onResult;
+        final ErrorCallback onError;
+        Runnable onCancel;
+
+        Subscriber(CancellationToken token, @Nullable Callback<T> onResult, @Nullable ErrorCallback onError) {
+            this.token = token;
+            this.onResult = onResult;
+            this.onError = onError;
+        }
+    }
+
+    private static final class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final Executor pool;
+        private Runnable active;
+
+        SerialExecutor(Executor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable r) {
+            tasks.offer(() -> {
+                try {
+                    r.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) scheduleNext();
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) pool.execute(active);
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, name + "-" + count.incrementAndGet()));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.mymediaplayer.ui;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.mymediaplayer.library.LongIntHashMap;
+import com.example.mymediaplayer.task.CancellationToken;
+import com.example.mymediaplayer.task.TaskScheduler;
+
+import java.util.Arrays;
+
+// Moves a RecyclerView adapter from one immutable list to the next with item-level updates,
+// diffed on the cpu pool like AsyncListDiffer but for any list type with unique ids. The
+// adapter keeps showing current() until the diff for the newest list is ready; results for
+// lists that were replaced in the meantime are dropped.
+//
+// Myers' diff costs about (N + M) * D for D inserted or removed items, which a large filter or
+// sort change makes quadratic. For unique ids D is known up front from the longest run of items
+// that kept their relative order, so such changes skip the diff and fall back to
+// notifyDataSetChanged: with stable ids that still only rebinds what is on screen.
+public class ListDiffer<L> {
+    private static final long MAX_DIFF_COST = 4_000_000L;
+
+    public interface Items<L> {
+        int size(@NonNull L list);
+
+        // Unique within a list, and the same for the same item across lists
+        long idAt(@NonNull L list, int position);
+
+        boolean sameContents(@NonNull L oldList, int oldPosition, @NonNull L newList, int newPosition);
+    }
+
+    private final RecyclerView.Adapter<?> adapter;
+    private final Items<L> items;
+    private final TaskScheduler tasks;
+    private final CancellationToken token;
+    private L current;
+    private int generation;
+    @Nullable
+    private Runnable onCurrentChanged;
+
+    public ListDiffer(@NonNull RecyclerView.Adapter<?> adapter, @NonNull Items<L> items, @NonNull L initial,
+                      @NonNull TaskScheduler tasks, @NonNull CancellationToken token) {
+        this.adapter = adapter;
+        this.items = items;
+        this.current = initial;
+        this.tasks = tasks;
+        this.token = token;
+    }
+
+    // Runs after current() changes, once the adapter has been told
+    @MainThread
+    public void setOnCurrentChanged(@Nullable Runnable r) {
+        onCurrentChanged = r;
+    }
+
+    // The list the adapter is showing
+    @MainThread
+    @NonNull
+    public L current() {
+        return current;
+    }
+
+    @MainThread
+    public void submit(@NonNull L next) {
+        int gen = ++generation;
+        L old = current;
+        int oldSize = items.size(old);
+        int newSize = items.size(next);
+        if (oldSize == 0 || newSize == 0) {
+            current = next;
+            if (oldSize > 0) adapter.notifyItemRangeRemoved(0, oldSize);
+            else if (newSize > 0) adapter.notifyItemRangeInserted(0, newSize);
+            if (onCurrentChanged != null) onCurrentChanged.run();
+            return;
+        }
+        tasks.submit(tasks.cpu(), token, t -> diff(old, next), result -> {
+            if (gen != generation) return;
+            current = next;
+            if (result == null) adapter.notifyDataSetChanged();
+            else result.dispatchUpdatesTo(adapter);
+            if (onCurrentChanged != null) onCurrentChanged.run();
+        });
+    }
+
+    // Null when the lists are too far apart to be worth diffing
+    @Nullable
+    private DiffUtil.DiffResult diff(L old, L next) {
+        int n = items.size(old);
+        int m = items.size(next);
+        long d = editDistance(old, next);
+        if (d * (n + m) > MAX_DIFF_COST) return null;
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return n;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return m;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return items.idAt(old, oldItemPosition) == items.idAt(next, newItemPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return items.sameContents(old, oldItemPosition, next, newItemPosition);
+            }
+        }, false);
+    }
+
+    // Inserts plus removals needed to turn `old` into `next`. With unique ids the longest common
+    // subsequence is the longest increasing run of old positions taken in new order.
+    private long editDistance(L old, L next) {
+        int n = items.size(old);
+        int m = items.size(next);
+        LongIntHashMap oldPositions = new LongIntHashMap(n);
+        for (int i = 0; i < n; i++) oldPositions.put(items.idAt(old, i), i);
+        // tails[k]: smallest old position ending an increasing run of length k + 1
+        int[] tails = new int[Math.min(n, m)];
+        int length = 0;
+        for (int j = 0; j < m; j++) {
+            int pos = oldPositions.get(items.idAt(next, j));
+            if (pos < 0) continue;
+            int k = Arrays.binarySearch(tails, 0, length, pos);
+            if (k < 0) k = -k - 1;
+            tails[k] = pos;
+            if (k == length) length++;
+        }
+        return (long) (n - length) + (m - length);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.mymediaplayer.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.mymediaplayer.R;
+
+// Vertical strip of section labels beside a list. Touching or dragging picks the section under
+// the finger, spread evenly over the strip's height; when there are more sections than fit,
+// only every n-th label is drawn but all of them can still be picked.
+public class SectionIndexBar extends View {
+
+    public interface Listener {
+        void onSectionSelected(int section);
+    }
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint selectedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private String[] labels = new String[0];
+    private int selected = -1;
+    @Nullable
+    private Listener listener;
+
+    public SectionIndexBar(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public SectionIndexBar(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(getResources().getDimension(R.dimen.section_index_text_size));
+        paint.setColor(ContextCompat.getColor(context, R.color.section_index_text));
+        selectedPaint.set(paint);
+        selectedPaint.setFakeBoldText(true);
+        selectedPaint.setColor(ContextCompat.getColor(context, R.color.section_index_selected));
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    // Hidden while there are fewer than two sections
+    public void setLabels(@NonNull String[] labels) {
+        this.labels = labels;
+        selected = -1;
+        setVisibility(labels.length > 1 ? VISIBLE : GONE);
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        int n = labels.length;
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (n == 0 || height <= 0) return;
+        float slot = (float) height / n;
+        float lineHeight = paint.getFontSpacing();
+        int step = Math.max(1, (int) Math.ceil(lineHeight / slot));
+        float x = getWidth() / 2f;
+        for (int i = 0; i < n; i += step) {
+            float y = getPaddingTop() + slot * i + (slot * step + lineHeight) / 2f - paint.descent();
+            canvas.drawText(labels[i], x, y, i == selected ? selectedPaint : paint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(@NonNull MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // keep the list from scrolling under the finger
+                if (getParent() != null) getParent().requestDisallowInterceptTouchEvent(true);
+                // fall through
+            case MotionEvent.ACTION_MOVE:
+                select(sectionAt(event.getY()));
+                return true;
+            case MotionEvent.ACTION_UP:
+                performClick();
+                // fall through
+            case MotionEvent.ACTION_CANCEL:
+                selected = -1;
+                invalidate();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private int sectionAt(float y) {
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (labels.length == 0 || height <= 0) return -1;
+        int i = (int) ((y - getPaddingTop()) / height * labels.length);
+        return Math.max(0, Math.min(labels.length - 1, i));
+    }
+
+    private void select(int section) {
+        if (section < 0 || section == selected) return;
+        selected = section;
+        invalidate();
+        if (listener != null) listener.onSectionSelected(section);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.mymediaplayer.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlaylistPositionsTest {
+    private static final long GAP = PlaylistPositions.GAP;
+
+    @Test
+    public void betweenEndsLeavesAGap() {
+        assertEquals(GAP, PlaylistPositions.between(null, null));
+        assertEquals(6 * GAP, PlaylistPositions.between(5 * GAP, null));
+        assertEquals(4 * GAP, PlaylistPositions.between(null, 5 * GAP));
+    }
+
+    @Test
+    public void betweenTwoKeysIsStrictlyInside() {
+        assertEquals(GAP + GAP / 2, PlaylistPositions.between(GAP, 2 * GAP));
+        assertEquals(11, PlaylistPositions.between(10L, 12L));
+        assertEquals(PlaylistPositions.NONE, PlaylistPositions.between(10L, 11L));
+        assertEquals(PlaylistPositions.NONE, PlaylistPositions.between(10L, 10L));
+    }
+
+    @Test
+    public void movesIntoTheSameGapRunOutAfterTwentyHalvings() {
+        // Each move lands just after `lo`, halving the gap that is left
+        long lo = GAP;
+        long hi = 2 * GAP;
+        int moves = 0;
+        while (true) {
+            long key = PlaylistPositions.between(lo, hi);
+            if (key == PlaylistPositions.NONE) break;
+            assertTrue(lo < key && key < hi);
+            hi = key;
+            moves++;
+        }
+        assertEquals(20, moves);
+    }
+
+    @Test
+    public void reorderKeepsTheLongestIncreasingRun() {
+        // items 1..5 where the item keyed 5 was dragged to the front
+        long[] current = {5 * GAP, GAP, 2 * GAP, 3 * GAP, 4 * GAP};
+        long[] keys = PlaylistPositions.reorder(current);
+        assertNotNull(keys);
+        assertStrictlyIncreasing(keys);
+        assertEquals(1, changed(current, keys));
+        assertArrayEquals(new long[]{0, GAP, 2 * GAP, 3 * GAP, 4 * GAP}, keys);
+    }
+
+    @Test
+    public void reorderOfRandomPermutationsChangesOnlyMovedRows() {
+        Random random = new Random(23);
+        for (int round = 0; round < 500; round++) {
+            int n = 1 + random.nextInt(60);
+            List<Long> order = new ArrayList<>();
+            for (int i = 1; i <= n; i++) order.add(i * GAP);
+            Collections.shuffle(order, random);
+            long[] current = new long[n];
+            for (int i = 0; i < n; i++) current[i] = order.get(i);
+            long[] keys = PlaylistPositions.reorder(current);
+            assertNotNull(keys);
+            assertStrictlyIncreasing(keys);
+            assertEquals(n - longestIncreasing(current), changed(current, keys));
+        }
+    }
+
+    @Test
+    public void reorderReportsAGapTooSmallAndSucceedsAfterRenumbering() {
+        // 10, 11, 12, 13 stay put, which leaves no key for the two items dropped between 10 and 11
+        long[] current = {10, 100, 200, 11, 12, 13};
+        assertNull(PlaylistPositions.reorder(current));
+        // PlaylistItemDao.renumber spaces the items GAP apart in their stored order, here 10 < 11 < ... < 200
+        long[] sorted = current.clone();
+        Arrays.sort(sorted);
+        long[] renumbered = new long[current.length];
+        for (int i = 0; i < current.length; i++) renumbered[i] = (Arrays.binarySearch(sorted, current[i]) + 1) * GAP;
+        long[] keys = PlaylistPositions.reorder(renumbered);
+        assertNotNull(keys);
+        assertStrictlyIncreasing(keys);
+        assertEquals(2, changed(renumbered, keys));
+    }
+
+    @Test
+    public void emptyAndSingleLists() {
+        assertArrayEquals(new long[0], PlaylistPositions.reorder(new long[0]));
+        assertArrayEquals(new long[]{7}, PlaylistPositions.reorder(new long[]{7}));
+    }
+
+    private static void assertStrictlyIncreasing(long[] keys) {
+        for (int i = 1; i < keys.length; i++) assertTrue(keys[i - 1] < keys[i]);
+    }
+
+    private static int changed(long[] before, long[] after) {
+        int n = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) n++;
+        }
+        return n;
+    }
+
+    // Quadratic reference for the length of the longest strictly increasing subsequence
+    private static int longestIncreasing(long[] a) {
+        int[] best = new int[a.length];
+        int max = 0;
+        for (int i = 0; i < a.length; i++) {
+            best[i] = 1;
+            for (int j = 0; j < i; j++) {
+                if (a[j] < a[i]) best[i] = Math.max(best[i], best[j] + 1);
+            }
+            max = Math.max(max, best[i]);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.mymediaplayer.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class PlaylistSearchTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void everyWordBecomesARequiredPrefixTerm() {
+        assertEquals("hello* world*", PlaylistSearch.matchQuery("Hello, World"));
+        assertEquals("beyoncé*", PlaylistSearch.matchQuery("  Beyoncé "));
+        assertEquals("ac* dc*", PlaylistSearch.matchQuery("AC/DC"));
+    }
+
+    @Test
+    public void ftsSyntaxIsNotPassedThrough() {
+        assertEquals("rock* or* roll*", PlaylistSearch.matchQuery("rock OR roll"));
+        assertEquals("a* near* b*", PlaylistSearch.matchQuery("\"a\" NEAR -b*"));
+        assertEquals("title* x*", PlaylistSearch.matchQuery("title:x"));
+    }
+
+    @Test
+    public void nothingSearchableGivesNull() {
+        assertNull(PlaylistSearch.matchQuery(""));
+        assertNull(PlaylistSearch.matchQuery("  \t"));
+        assertNull(PlaylistSearch.matchQuery("\"*-:()"));
+    }
+
+    @Test
+    public void rareTermsCountForMore() {
+        // one phrase, hit once in the title; the term is in 2 rows vs 10 rows overall
+        double rare = PlaylistSearch.rank(matchInfo(1, 3, 1, 2, 1, 0, 0, 0, 0, 0, 0));
+        double common = PlaylistSearch.rank(matchInfo(1, 3, 1, 10, 5, 0, 0, 0, 0, 0, 0));
+        assertEquals(0.5, rare, DELTA);
+        assertEquals(0.1, common, DELTA);
+    }
+
+    @Test
+    public void titleHitsCountForMoreThanArtistAndAlbum() {
+        double title = PlaylistSearch.rank(matchInfo(1, 3, 1, 1, 1, 0, 0, 0, 0, 0, 0));
+        double artist = PlaylistSearch.rank(matchInfo(1, 3, 0, 0, 0, 1, 1, 1, 0, 0, 0));
+        double album = PlaylistSearch.rank(matchInfo(1, 3, 0, 0, 0, 0, 0, 0, 1, 1, 1));
+        assertEquals(1.0, title, DELTA);
+        assertEquals(0.75, artist, DELTA);
+        assertEquals(0.5, album, DELTA);
+    }
+
+    @Test
+    public void scoresAddUpOverPhrases() {
+        double score = PlaylistSearch.rank(matchInfo(2, 3,
+                1, 2, 2, 0, 0, 0, 0, 0, 0,
+                0, 0, 0, 2, 4, 3, 0, 0, 0));
+        assertEquals(0.5 + 0.75 * 2 / 4, score, DELTA);
+    }
+
+    @Test
+    public void missingOrTruncatedMatchInfoDoesNotThrow() {
+        assertEquals(0, PlaylistSearch.rank(null), DELTA);
+        assertEquals(0, PlaylistSearch.rank(new byte[4]), DELTA);
+        byte[] full = matchInfo(1, 3, 1, 1, 1, 0, 0, 0, 0, 0, 0);
+        byte[] truncated = new byte[full.length - 12];
+        System.arraycopy(full, 0, truncated, 0, truncated.length);
+        assertEquals(1.0, PlaylistSearch.rank(truncated), DELTA);
+    }
+
+    // matchinfo blobs are 32-bit unsigned ints in the platform's byte order
+    private static byte[] matchInfo(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (int v : values) buffer.putInt(v);
+        return buffer.array();
+    }
+}
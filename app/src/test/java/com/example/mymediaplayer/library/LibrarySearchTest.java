@@ -0,0 +1,73 @@
+package com.example.mymediaplayer.library;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LibrarySearchTest {
+    private static final String[] WORDS = {"love", "lovely", "glove", "blue", "monday", "moon", "day", "night", "café", "Beyoncé"};
+
+    private final Random random = new Random(14);
+    private final LibraryStore store = new LibraryStore();
+    private final LibrarySearch search = new LibrarySearch(store);
+    private long nextId = 1;
+
+    @Test
+    public void typingAndBackspacingMatchFreshSearches() {
+        addTracks(500);
+        String query = "lovely day";
+        for (int i = 1; i <= query.length(); i++) assertMatchesFresh(query.substring(0, i));
+        for (int i = query.length() - 1; i >= 1; i--) assertMatchesFresh(query.substring(0, i));
+    }
+
+    @Test
+    public void cachedResultsFollowStoreChanges() {
+        addTracks(300);
+        String[] queries = {"mo", "moo", "moon", "mon", "monday", "blu", "blue", "cafe", "beyonce", "e"};
+        for (int round = 0; round < 40; round++) {
+            for (String q : queries) assertMatchesFresh(q);
+            // appends, updates (a new row tombstoning the old one) and removals between searches
+            addTracks(random.nextInt(20));
+            for (int i = 0; i < 5; i++) {
+                long id = 1 + random.nextInt((int) nextId - 1);
+                if (random.nextBoolean()) store.remove(id);
+                else store.put(id, title(), word(), word(), 0, 0, 0);
+            }
+        }
+    }
+
+    @Test
+    public void clearedStoreIsNotServedFromCache() {
+        addTracks(200);
+        assertMatchesFresh("love");
+        assertMatchesFresh("lovel");
+        store.clear();
+        addTracks(100);
+        assertMatchesFresh("love");
+        assertMatchesFresh("lovel");
+        assertMatchesFresh("lovely");
+    }
+
+    private void assertMatchesFresh(String query) {
+        LibraryStore.Matcher m = store.matcher(query);
+        LibraryView cached = new LibraryView();
+        search.search(m, cached);
+        LibraryView fresh = new LibraryView();
+        store.search(store.matcher(query), fresh);
+        assertArrayEquals(query, fresh.toArray(), cached.toArray());
+    }
+
+    private void addTracks(int n) {
+        for (int i = 0; i < n; i++) store.put(nextId++, title(), word(), word(), 0, 0, 0);
+    }
+
+    private String title() {
+        return word() + " " + word();
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
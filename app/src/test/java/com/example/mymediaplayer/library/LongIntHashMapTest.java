@@ -0,0 +1,100 @@
+package com.example.mymediaplayer.library;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntHashMapTest {
+    @Test
+    public void randomOperationsMatchHashMap() {
+        Random random = new Random(7);
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int op = 0; op < 200_000; op++) {
+            // a narrow key range keeps probe runs long and removals frequent
+            long key = random.nextInt(2000) - 1000L;
+            switch (random.nextInt(3)) {
+                case 0: {
+                    int value = random.nextInt(Integer.MAX_VALUE);
+                    map.put(key, value);
+                    reference.put(key, value);
+                    break;
+                }
+                case 1: {
+                    Integer removed = reference.remove(key);
+                    assertEquals(removed == null ? -1 : removed, map.remove(key));
+                    break;
+                }
+                default: {
+                    Integer value = reference.get(key);
+                    assertEquals(value == null ? -1 : value, map.get(key));
+                }
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (Map.Entry<Long, Integer> e : reference.entrySet()) assertEquals((int) e.getValue(), map.get(e.getKey()));
+    }
+
+    @Test
+    public void removalInsideAProbeRunKeepsLaterEntriesReachable() {
+        // Probe runs in a 16-slot table, one of a single home slot and two that wrap around the
+        // end; removing any key must shift the rest back rather than cut the run
+        for (int[] homes : new int[][]{{3, 3, 3, 3, 3, 3}, {15, 15, 0, 15, 0, 1}, {14, 0, 15, 14, 0, 15}}) {
+            for (int first = 0; first < homes.length; first++) {
+                LongIntHashMap map = new LongIntHashMap(4);
+                long[] keys = keysHomedAt(homes, 15);
+                for (int i = 0; i < keys.length; i++) map.put(keys[i], i);
+                assertEquals(first, map.remove(keys[first]));
+                assertEquals(-1, map.get(keys[first]));
+                for (int i = 0; i < keys.length; i++) {
+                    if (i != first) assertEquals(i, map.get(keys[i]));
+                }
+                assertEquals(keys.length - 1, map.size());
+            }
+        }
+    }
+
+    @Test
+    public void growingKeepsEveryEntry() {
+        LongIntHashMap map = new LongIntHashMap(1);
+        for (int i = 0; i < 10_000; i++) map.put(i * 7919L, i);
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) assertEquals(i, map.get(i * 7919L));
+    }
+
+    @Test
+    public void putOverwritesAndClearEmpties() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        map.put(Long.MIN_VALUE, 1);
+        map.put(Long.MIN_VALUE, 2);
+        map.put(Long.MAX_VALUE, 3);
+        assertEquals(2, map.size());
+        assertEquals(2, map.get(Long.MIN_VALUE));
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(Long.MIN_VALUE));
+        assertEquals(-1, map.remove(Long.MAX_VALUE));
+    }
+
+    // Distinct keys whose home slot in a table with `mask` is homes[i], mirroring
+    // LongIntHashMap's slot()
+    private static long[] keysHomedAt(int[] homes, int mask) {
+        long[] keys = new long[homes.length];
+        long next = 1;
+        for (int i = 0; i < homes.length; i++) {
+            for (long key = next; ; key++) {
+                long h = key * 0x9E3779B97F4A7C15L;
+                if (((int) (h ^ (h >>> 32)) & mask) == homes[i]) {
+                    keys[i] = key;
+                    next = key + 1;
+                    break;
+                }
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.mymediaplayer.library;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RankedSearchTest {
+    private final LibraryStore store = new LibraryStore();
+    private final RankedSearch ranked = new RankedSearch(store);
+    private long nextId = 1;
+
+    @Test
+    public void keepsTheBestLimitInScoreThenRowOrder() {
+        // Titles whose score against "love" is known: exact, prefix, start of a word, substring
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) titles.add("love");
+        for (int i = 0; i < 30; i++) titles.add("love song " + i);
+        for (int i = 0; i < 30; i++) titles.add("my love " + i);
+        for (int i = 0; i < 60; i++) titles.add("glove " + i);
+        for (int i = 0; i < 200; i++) titles.add("sunday " + i);
+        Collections.shuffle(titles, new Random(16));
+        List<List<Integer>> byScore = new ArrayList<>();
+        for (int i = 0; i < 4; i++) byScore.add(new ArrayList<>());
+        for (String title : titles) {
+            int row = put(title, null);
+            if (title.equals("love")) byScore.get(0).add(row);
+            else if (title.startsWith("love")) byScore.get(1).add(row);
+            else if (title.startsWith("my")) byScore.get(2).add(row);
+            else if (title.startsWith("glove")) byScore.get(3).add(row);
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (List<Integer> rows : byScore) expected.addAll(rows);
+        assertEquals(125, expected.size());
+        assertEquals(expected.subList(0, RankedSearch.LIMIT), search("love"));
+    }
+
+    @Test
+    public void skipsRemovedRows() {
+        int a = put("love", null);
+        put("love", null);
+        int c = put("lovely", null);
+        store.remove(store.idAt(1));
+        assertEquals(list(a, c), search("love"));
+    }
+
+    @Test
+    public void toleratesTyposAndAnUnfinishedLastWord() {
+        int hit = put("Bohemian Rhapsody", "Queen");
+        put("Another One Bites the Dust", "Queen");
+        assertEquals(list(hit), search("bohemian rapsody"));
+        assertEquals(list(hit), search("bohemain rhap"));
+        assertEquals(list(), search("bohemian rxyzody"));
+    }
+
+    @Test
+    public void shortWordsMustBeExact() {
+        put("ab cd", null);
+        assertEquals(list(), search("ax cd"));
+    }
+
+    @Test
+    public void artistScoresBelowTheSameTitleMatch() {
+        int byArtist = put("Something", "Love");
+        int wordInTitle = put("Crazy Love", null);
+        int exactTitle = put("Love", null);
+        assertEquals(list(exactTitle, byArtist, wordInTitle), search("love"));
+    }
+
+    private int put(String title, String artist) {
+        return store.put(nextId++, title, artist, null, 0, 0, 0);
+    }
+
+    private List<Integer> search(String query) {
+        LibraryView out = new LibraryView();
+        ranked.search(SearchKeys.normalize(query), out);
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < out.size(); i++) rows.add(out.rowAt(i));
+        return rows;
+    }
+
+    private static List<Integer> list(Integer... rows) {
+        List<Integer> out = new ArrayList<>();
+        Collections.addAll(out, rows);
+        return out;
+    }
+}
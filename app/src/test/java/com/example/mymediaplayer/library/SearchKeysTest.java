@@ -0,0 +1,54 @@
+package com.example.mymediaplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchKeysTest {
+    @Test
+    public void accentsAndCaseAreFolded() {
+        assertEquals("beyonce", SearchKeys.normalize("Beyoncé"));
+        assertEquals("beyonce", SearchKeys.normalize("BEYONCE"));
+        assertEquals("sigur ros", SearchKeys.normalize("Sigur Rós"));
+        assertEquals("motorhead", SearchKeys.normalize("Motörhead"));
+    }
+
+    @Test
+    public void lettersWithoutADecompositionAreSpelledOut() {
+        assertEquals("strasse", SearchKeys.normalize("Straße"));
+        assertEquals("aeon", SearchKeys.normalize("Æon"));
+        assertEquals("oresund", SearchKeys.normalize("Øresund"));
+        assertEquals("lodz", SearchKeys.normalize("Łódź"));
+        assertEquals("oeuvre", SearchKeys.normalize("Œuvre"));
+    }
+
+    @Test
+    public void whitespaceIsTrimmedAndCollapsed() {
+        assertEquals("the beatles", SearchKeys.normalize("  The \t Beatles\n"));
+        assertEquals("a b", SearchKeys.normalize("a\tb"));
+        assertEquals("", SearchKeys.normalize(" \t "));
+    }
+
+    @Test
+    public void emptyAndNullGiveEmpty() {
+        assertEquals("", SearchKeys.normalize(null));
+        assertEquals("", SearchKeys.normalize(""));
+    }
+
+    @Test
+    public void normalAsciiIsReturnedAsIs() {
+        String s = "already normal 123";
+        assertSame(s, SearchKeys.normalize(s));
+        assertEquals("trailing", SearchKeys.normalize("trailing "));
+        assertEquals("double space", SearchKeys.normalize("double  space"));
+    }
+
+    @Test
+    public void normalizingTwiceChangesNothing() {
+        String[] samples = {"Beyoncé", "  Straße  Øl ", "ÀÉÎÕÜ", "naïve café", "x́y"};
+        for (String s : samples) {
+            String once = SearchKeys.normalize(s);
+            assertEquals(s, once, SearchKeys.normalize(once));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.mymediaplayer.library;
+
+import org.junit.Test;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SortOrdersTest {
+    private static final String[] NAMES = {"abba", "Abba", "ABBA", "Åsa", "asa", "zebra", "Zoë", "zoe", "émile", "Emile",
+            "beta", "Béta", "10 years", "2 pac", "", "the end", "The End"};
+
+    private final Random random = new Random(18);
+    private final Collator collator = Collator.getInstance(Locale.getDefault());
+    private final LibraryStore store = new LibraryStore();
+    private final SortOrders orders = new SortOrders(store);
+    private long nextId = 1;
+
+    @Test
+    public void wholeLibraryMatchesCollatorSorts() {
+        addTracks(1000);
+        for (int mode : new int[]{LibraryEngine.SORT_TITLE, LibraryEngine.SORT_ARTIST, LibraryEngine.SORT_RECENT}) {
+            assertSorted(mode, liveRowsShuffled());
+        }
+    }
+
+    @Test
+    public void smallSubsetsMatchCollatorSorts() {
+        addTracks(1000);
+        for (int mode : new int[]{LibraryEngine.SORT_TITLE, LibraryEngine.SORT_ARTIST, LibraryEngine.SORT_RECENT}) {
+            assertSorted(mode, liveRowsShuffled().subList(0, 10));
+        }
+    }
+
+    @Test
+    public void storedOrdersFollowUpdatesAndRemovals() {
+        addTracks(500);
+        for (int round = 0; round < 20; round++) {
+            for (int mode : new int[]{LibraryEngine.SORT_TITLE, LibraryEngine.SORT_ARTIST, LibraryEngine.SORT_RECENT}) {
+                assertSorted(mode, liveRowsShuffled());
+            }
+            for (int i = 0; i < 30; i++) {
+                long id = 1 + random.nextInt((int) nextId - 1);
+                if (random.nextInt(3) == 0) {
+                    store.remove(id);
+                } else {
+                    // new ids and updates of existing ones, one row at a time
+                    if (random.nextBoolean()) id = nextId++;
+                    orders.added(store.put(id, name(), name(), null, 0, random.nextInt(50), 0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bulkChangesRebuildAfterInvalidate() {
+        addTracks(300);
+        assertSorted(LibraryEngine.SORT_TITLE, liveRowsShuffled());
+        addTracks(300);
+        orders.invalidate();
+        assertSorted(LibraryEngine.SORT_TITLE, liveRowsShuffled());
+        store.clear();
+        orders.clear();
+        addTracks(100);
+        assertSorted(LibraryEngine.SORT_TITLE, liveRowsShuffled());
+    }
+
+    private void assertSorted(int mode, List<Integer> rows) {
+        LibraryView view = new LibraryView();
+        for (int row : rows) view.add(row);
+        orders.sort(mode, view);
+        List<Integer> expected = new ArrayList<>(rows);
+        expected.sort(expectedOrder(mode));
+        List<Integer> actual = new ArrayList<>();
+        for (int i = 0; i < view.size(); i++) actual.add(view.rowAt(i));
+        assertEquals("mode " + mode, expected, actual);
+    }
+
+    // What each sort means, spelled out with a plain Collator; ties go by row
+    private Comparator<Integer> expectedOrder(int mode) {
+        Comparator<Integer> byField;
+        switch (mode) {
+            case LibraryEngine.SORT_TITLE:
+                byField = (a, b) -> collator.compare(store.titleAt(a), store.titleAt(b));
+                break;
+            case LibraryEngine.SORT_ARTIST:
+                // tracks with no artist come first
+                byField = Comparator.comparing(store::artistAt, Comparator.nullsFirst(collator::compare));
+                break;
+            default:
+                byField = (a, b) -> Long.compare(store.dateAddedAt(b), store.dateAddedAt(a));
+        }
+        return byField.thenComparing(Comparator.naturalOrder());
+    }
+
+    private List<Integer> liveRowsShuffled() {
+        List<Integer> rows = new ArrayList<>();
+        for (int row : store.liveRows()) rows.add(row);
+        Collections.shuffle(rows, random);
+        return rows;
+    }
+
+    private void addTracks(int n) {
+        for (int i = 0; i < n; i++) {
+            String artist = random.nextInt(10) == 0 ? null : name();
+            store.put(nextId++, name(), artist, null, 0, random.nextInt(50), 0);
+        }
+    }
+
+    private String name() {
+        return NAMES[random.nextInt(NAMES.length)] + (random.nextBoolean() ? "" : " " + random.nextInt(3));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mymediaplayer.library;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrigramIndexTest {
+    @Test
+    public void candidatesMatchBruteForce() {
+        Random random = new Random(13);
+        // A small alphabet so trigrams repeat and posting lists overlap heavily
+        List<String> keys = new ArrayList<>();
+        TrigramIndex index = new TrigramIndex();
+        for (int id = 0; id < 2000; id++) {
+            String key = randomString(random, random.nextInt(14));
+            keys.add(key);
+            index.add(id, key);
+        }
+        for (int q = 0; q < 500; q++) {
+            String query = randomString(random, 3 + random.nextInt(4));
+            assertArrayEquals(query, idsWithAllTrigrams(keys, query), index.candidates(query));
+        }
+    }
+
+    @Test
+    public void candidatesIncludeEverySubstringMatch() {
+        TrigramIndex index = new TrigramIndex();
+        String[] keys = {"bohemian rhapsody", "rhapsody in blue", "blue monday", "mondays", "hap"};
+        for (int id = 0; id < keys.length; id++) index.add(id, keys[id]);
+        assertArrayEquals(new int[]{0, 1}, index.candidates("rhapsody"));
+        assertArrayEquals(new int[]{1, 2}, index.candidates("blue"));
+        assertArrayEquals(new int[]{2, 3}, index.candidates("monday"));
+        assertArrayEquals(new int[]{0, 1, 4}, index.candidates("hap"));
+    }
+
+    @Test
+    public void shortKeysCannotBeLookedUp() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(0, "abc");
+        assertNull(index.candidates(""));
+        assertNull(index.candidates("ab"));
+    }
+
+    @Test
+    public void unknownTrigramHasNoCandidates() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(0, "abcdef");
+        assertArrayEquals(new int[0], index.candidates("abx"));
+        assertArrayEquals(new int[0], index.candidates("abcdefx"));
+    }
+
+    @Test
+    public void repeatedTrigramIsPostedOnce() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(0, "aaaaaa");
+        index.add(1, "aaa");
+        assertArrayEquals(new int[]{0, 1}, index.candidates("aaa"));
+        assertArrayEquals(new int[]{0, 1}, index.candidates("aaaa"));
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(0, "abcdef");
+        index.clear();
+        assertArrayEquals(new int[0], index.candidates("abc"));
+        index.add(0, "xyz");
+        assertArrayEquals(new int[]{0}, index.candidates("xyz"));
+    }
+
+    private static int[] idsWithAllTrigrams(List<String> keys, String query) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < keys.size(); id++) {
+            boolean all = true;
+            for (int i = 0; i + TrigramIndex.N <= query.length() && all; i++) {
+                all = keys.get(id).contains(query.substring(i, i + TrigramIndex.N));
+            }
+            if (all) ids.add(id);
+        }
+        int[] out = new int[ids.size()];
+        for (int i = 0; i < out.length; i++) out[i] = ids.get(i);
+        return out;
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append("abc d".charAt(random.nextInt(5)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.mymediaplayer.playback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimeFormatterTest {
+    private final TimeFormatter formatter = new TimeFormatter();
+
+    @Test
+    public void formatsMinutesAndPaddedSeconds() {
+        assertEquals("0:00", formatter.text(0));
+        assertEquals("0:00", formatter.text(999));
+        assertEquals("0:05", formatter.text(5_000));
+        assertEquals("1:01", formatter.text(61_000));
+        assertEquals("10:00", formatter.text(600_000));
+        assertEquals("120:59", formatter.text(7_259_999));
+    }
+
+    @Test
+    public void negativeIsZero() {
+        assertEquals("0:00", formatter.text(-1));
+        assertEquals("0:00", formatter.text(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void largestIntFits() {
+        assertEquals("35791:23", formatter.text(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shorterTextAfterLongerIsNotPolluted() {
+        // the buffer is reused, so leftovers from a longer value must not show through
+        assertEquals("35791:23", formatter.text(Integer.MAX_VALUE));
+        assertEquals("0:07", formatter.text(7_000));
+        assertEquals("100:00", formatter.text(6_000_000));
+        assertEquals("9:59", formatter.text(599_999));
+    }
+
+    @Test
+    public void matchesStringFormat() {
+        for (int ms = 0; ms < 4_000_000; ms += 997) {
+            int s = ms / 1000;
+            assertEquals(String.format("%d:%02d", s / 60, s % 60), formatter.text(ms));
+        }
+    }
+}